@@ -0,0 +1,73 @@
+package com.xiong.payment_gateway.exception;
+
+import com.xiong.payment_gateway.dto.PaymentRequest;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Error response building in {@link GlobalExceptionHandler} for the two most frequent
+ * rejections: business rule violations and request validation failures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorResponseBenchmark {
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler(
+        new GatewayMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry()));
+
+    private WebRequest request;
+    private PaymentGatewayException gatewayException;
+    private MethodArgumentNotValidException validationException;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        request = new ServletWebRequest(new MockHttpServletRequest("POST", "/api/v1/refunds"));
+        gatewayException = new PaymentGatewayException(
+            "Refund amount exceeds remaining amount. Requested: 120.00, Available: 80.00",
+            HttpStatus.BAD_REQUEST,
+            "REFUND_AMOUNT_EXCEEDS_BALANCE"
+        );
+
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(new PaymentRequest(), "paymentRequest");
+        bindingResult.rejectValue("amount", "NotNull", "Amount is required");
+        bindingResult.rejectValue("currency", "Size", "Currency must be 3 characters");
+        MethodParameter parameter = new MethodParameter(
+            ErrorResponseBenchmark.class.getDeclaredMethod("target", PaymentRequest.class), 0);
+        validationException = new MethodArgumentNotValidException(parameter, bindingResult);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> paymentGatewayException() {
+        return handler.handlePaymentGatewayException(gatewayException, request);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> validationFailure() {
+        return handler.handleMethodArgumentNotValid(
+            validationException, HttpHeaders.EMPTY, HttpStatus.BAD_REQUEST, request);
+    }
+
+    // Stands in for the controller method whose argument failed validation
+    @SuppressWarnings("unused")
+    private void target(PaymentRequest request) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.xiong.payment_gateway.grpc;
+
+import com.google.protobuf.Timestamp;
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.dto.PaymentResponse;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proto/DTO conversions done on every gRPC payment call, including amount parsing
+ * and timestamp conversion. {@code cachedTransactionToProto} is the GetPayment path for
+ * a transaction whose proto is already cached; {@code transactionToProto} builds it.
+ * Run with the {@code gc} profiler (configured in build.gradle) for bytes per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PaymentConversionBenchmark {
+    private final PaymentGrpcService service = new PaymentGrpcService(null, null, new GrpcStreamExecutor(new BoundedExecutors(new StandardEnvironment())), null);
+
+    private PaymentRequest protoRequest;
+    private PaymentResponse response;
+    private PaymentTransaction transaction;
+    private PaymentTransaction persistedTransaction;
+    private LocalDateTime now;
+
+    @Setup
+    public void setUp() {
+        protoRequest = PaymentRequest.newBuilder()
+            .setMerchantId("merchant-123")
+            .setAmount("1249.99")
+            .setCurrency("USD")
+            .setIdempotencyKey("order-8f2c1a7e-42")
+            .setCustomerId("customer-77")
+            .setPaymentMethod("card")
+            .setWebhookUrl("https://merchant.example.com/webhooks/payments")
+            .putMetadata("order_id", "8f2c1a7e")
+            .putMetadata("channel", "web")
+            .build();
+
+        now = LocalDateTime.now();
+        response = PaymentResponse.builder()
+            .transactionId("0192f3b4-5c6d-7e8f-9a0b-1c2d3e4f5a6b")
+            .status("SUCCESS")
+            .amount(new BigDecimal("1249.99"))
+            .currency("USD")
+            .createdAt(now)
+            .message("Payment processed successfully")
+            .build();
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("order_id", "8f2c1a7e");
+        metadata.put("channel", "web");
+        metadata.put("items", 3);
+        transaction = new PaymentTransaction();
+        transaction.setId("0192f3b4-5c6d-7e8f-9a0b-1c2d3e4f5a6b");
+        transaction.setMerchantId("merchant-123");
+        transaction.setAmount(new BigDecimal("1249.99"));
+        transaction.setCurrency("USD");
+        transaction.setStatus(TransactionStatus.SUCCESS);
+        transaction.setIdempotencyKey("order-8f2c1a7e-42");
+        transaction.setCustomerId("customer-77");
+        transaction.setPaymentMethod("card");
+        transaction.setMetadata(metadata);
+        transaction.setCreatedAt(now);
+        transaction.setUpdatedAt(now);
+
+        persistedTransaction = new PaymentTransaction();
+        persistedTransaction.setId(transaction.getId());
+        persistedTransaction.setMerchantId(transaction.getMerchantId());
+        persistedTransaction.setAmount(transaction.getAmount());
+        persistedTransaction.setCurrency(transaction.getCurrency());
+        persistedTransaction.setStatus(transaction.getStatus());
+        persistedTransaction.setIdempotencyKey(transaction.getIdempotencyKey());
+        persistedTransaction.setCustomerId(transaction.getCustomerId());
+        persistedTransaction.setPaymentMethod(transaction.getPaymentMethod());
+        persistedTransaction.setMetadata(metadata);
+        persistedTransaction.setCreatedAt(now);
+        persistedTransaction.setUpdatedAt(now);
+        persistedTransaction.setVersion(3L);
+    }
+
+    @Benchmark
+    public com.xiong.payment_gateway.dto.PaymentRequest protoRequestToDto() {
+        com.xiong.payment_gateway.dto.PaymentRequest request = service.toPaymentRequest(protoRequest);
+        request.setAmount(new BigDecimal(protoRequest.getAmount()));
+        return request;
+    }
+
+    @Benchmark
+    public com.xiong.payment_gateway.grpc.PaymentResponse dtoResponseToProto() {
+        return service.toProtoResponse(response);
+    }
+
+    @Benchmark
+    public com.xiong.payment_gateway.grpc.PaymentTransaction transactionToProto() {
+        return service.convertToProtoTransaction(transaction);
+    }
+
+    @Benchmark
+    public com.xiong.payment_gateway.grpc.PaymentTransaction cachedTransactionToProto() {
+        return service.toProtoTransaction(persistedTransaction);
+    }
+
+    @Benchmark
+    public Timestamp localDateTimeToTimestamp() {
+        return service.localDateTimeToTimestamp(now);
+    }
+}
@@ -0,0 +1,45 @@
+package com.xiong.payment_gateway.id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the UUIDv7 generator against the random v4 UUIDs it replaced,
+ * single-threaded and under contention on the shared CAS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdGeneratorBenchmark {
+    private final UuidV7Generator generator = UuidV7Generator.INSTANCE;
+
+    @Benchmark
+    public String uuidV7() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public String randomUuidV4() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String uuidV7Contended() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String randomUuidV4Contended() {
+        return UUID.randomUUID().toString();
+    }
+}
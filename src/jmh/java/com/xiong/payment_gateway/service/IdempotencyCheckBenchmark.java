@@ -0,0 +1,108 @@
+package com.xiong.payment_gateway.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The idempotency check at the start of every payment, against an embedded Redis server
+ * on loopback: a repeat served by the near cache, a repeat that has to ask Redis, and a
+ * first-time key reserved by the Lua script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdempotencyCheckBenchmark {
+    private static final String PROCESSED_KEY = "order-processed";
+
+    private final AtomicLong keySequence = new AtomicLong();
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private IdempotencyService withNearCache;
+    private IdempotencyService redisOnly;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // Redis stays up, so the database tier is never reached
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        withNearCache = new IdempotencyService(redisTemplate,
+            new IdempotencyNearCache(redisTemplate, container, meterRegistry), null, null, meterRegistry);
+        redisOnly = new IdempotencyService(redisTemplate,
+            new DisabledNearCache(redisTemplate, container, meterRegistry), null, null, meterRegistry);
+        withNearCache.markAsProcessed(PROCESSED_KEY, "0192f3b4-5c6d-7e8f-9a0b-1c2d3e4f5a6b");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    public IdempotencyService.Reservation repeatNearCacheHit() {
+        return withNearCache.reserve(PROCESSED_KEY);
+    }
+
+    @Benchmark
+    public IdempotencyService.Reservation repeatRedisHit() {
+        return redisOnly.reserve(PROCESSED_KEY);
+    }
+
+    @Benchmark
+    public IdempotencyService.Reservation firstTimeReserve() {
+        return redisOnly.reserve("order-" + keySequence.incrementAndGet());
+    }
+
+    private static final class DisabledNearCache extends IdempotencyNearCache {
+        DisabledNearCache(
+            RedisTemplate<String, String> redisTemplate,
+            RedisMessageListenerContainer container,
+            MeterRegistry meterRegistry
+        ) {
+            super(redisTemplate, container, meterRegistry);
+        }
+
+        @Override
+        public String get(String idempotencyKey) {
+            return null;
+        }
+
+        @Override
+        public void put(String idempotencyKey, String transactionId) {
+        }
+    }
+}
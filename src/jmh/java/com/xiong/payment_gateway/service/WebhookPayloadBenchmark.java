@@ -0,0 +1,50 @@
+package com.xiong.payment_gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.models.WebhookEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing the {@code payment.completed} outbox event, done once per payment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebhookPayloadBenchmark {
+    private WebhookService webhookService;
+    private PaymentTransaction transaction;
+
+    @Setup
+    public void setUp() {
+        // Same ObjectMapper configuration as AppConfig; delivery collaborators are not used
+        ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        webhookService = new WebhookService(null, null, objectMapper, null, null);
+
+        transaction = new PaymentTransaction();
+        transaction.setId("0192f3b4-5c6d-7e8f-9a0b-1c2d3e4f5a6b");
+        transaction.setMerchantId("merchant-123");
+        transaction.setAmount(new BigDecimal("1249.99"));
+        transaction.setCurrency("USD");
+        transaction.setStatus(TransactionStatus.SUCCESS);
+    }
+
+    @Benchmark
+    public WebhookEvent buildPaymentEvent() {
+        return webhookService.buildPaymentEvent(transaction, "merchant.example.com/webhooks/payments");
+    }
+}
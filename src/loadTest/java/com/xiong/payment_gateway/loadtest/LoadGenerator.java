@@ -0,0 +1,286 @@
+package com.xiong.payment_gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiong.payment_gateway.grpc.GetPaymentRequest;
+import com.xiong.payment_gateway.grpc.PaymentRequest;
+import com.xiong.payment_gateway.grpc.PaymentResponse;
+import com.xiong.payment_gateway.grpc.PaymentServiceGrpc;
+import com.xiong.payment_gateway.grpc.RefundRequest;
+import com.xiong.payment_gateway.grpc.RefundServiceGrpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.StatusRuntimeException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the gateway with {@code concurrency} workers, each picking operations by the
+ * configured mix. Gets and refunds target payments created earlier in the run; refunds
+ * only those the provider approved (SUCCESS).
+ */
+class LoadGenerator {
+    private static final int RECENT_CAPACITY = 4096;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestOptions options;
+    private final URI paymentsUri;
+    private final String webhookUrl;
+    private final HttpClient httpClient;
+    private final PaymentServiceGrpc.PaymentServiceBlockingStub paymentStub;
+    private final RefundServiceGrpc.RefundServiceBlockingStub refundStub;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private final Recent createdPayments = new Recent(RECENT_CAPACITY);
+    private final Recent approvedPayments = new Recent(RECENT_CAPACITY);
+    private final Recent usedKeys = new Recent(RECENT_CAPACITY);
+
+    LoadGenerator(LoadTestOptions options, URI baseUri, ManagedChannel channel, String webhookUrl) {
+        this.options = options;
+        this.paymentsUri = baseUri.resolve("/api/v1/payments");
+        this.webhookUrl = webhookUrl;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        this.paymentStub = PaymentServiceGrpc.newBlockingStub(channel);
+        this.refundStub = RefundServiceGrpc.newBlockingStub(channel);
+
+        List<Operation> enabled = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            int weight = options.getMix().getOrDefault(operation, 0);
+            if (weight > 0) {
+                total += weight;
+                enabled.add(operation);
+                weights.add(total);
+            }
+        }
+        if (enabled.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix must give at least one operation a positive weight");
+        }
+        this.operations = enabled.toArray(Operation[]::new);
+        this.cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Runs the warm-up and then the measurement, blocking until both are over and every
+     * in-flight call has returned. Only calls scheduled during the measurement are recorded
+     * into {@code measured}.
+     */
+    void run(LatencyStats warmup, LatencyStats measured) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureStart = start + options.getWarmup().toNanos();
+        long end = measureStart + options.getDuration().toNanos();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < options.getConcurrency(); i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> work(worker, start, measureStart, end, warmup, measured), "load-" + i);
+            thread.start();
+            workers.add(thread);
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+    }
+
+    private void work(int worker, long start, long measureStart, long end, LatencyStats warmup, LatencyStats measured) {
+        SplittableRandom random = new SplittableRandom(options.getSeed() * 31 + worker);
+        AtomicLong sequence = new AtomicLong();
+        long interval = options.getRate() > 0
+            ? TimeUnit.SECONDS.toNanos(options.getConcurrency()) / options.getRate()
+            : 0;
+        // Stagger paced workers so they do not all send at the same instant
+        long scheduled = start + interval * worker / Math.max(options.getConcurrency(), 1);
+
+        while (true) {
+            long intended;
+            if (interval > 0) {
+                intended = scheduled;
+                scheduled += interval;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                intended = System.nanoTime();
+            }
+            if (intended >= end) {
+                return;
+            }
+
+            Operation operation = pick(random);
+            String outcome;
+            try {
+                outcome = execute(operation, worker, sequence, random);
+            } catch (StatusRuntimeException e) {
+                outcome = e.getStatus().getCode().name();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                outcome = "error-" + e.getClass().getSimpleName();
+            }
+            long latency = System.nanoTime() - intended;
+            (intended < measureStart ? warmup : measured).record(operation, latency, outcome);
+        }
+    }
+
+    private Operation pick(SplittableRandom random) {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        Operation operation = operations[0];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                operation = operations[i];
+                break;
+            }
+        }
+        // Nothing to read or refund yet early in the warm-up
+        if (operation == Operation.GRPC_GET && createdPayments.isEmpty()
+            || operation == Operation.GRPC_REFUND && approvedPayments.isEmpty()) {
+            return Operation.GRPC_CREATE;
+        }
+        return operation;
+    }
+
+    private String execute(Operation operation, int worker, AtomicLong sequence, SplittableRandom random)
+            throws IOException, InterruptedException {
+        return switch (operation) {
+            case REST_CREATE -> restCreate(idempotencyKey(worker, sequence, random));
+            case GRPC_CREATE -> grpcCreate(idempotencyKey(worker, sequence, random));
+            case GRPC_GET -> grpcGet(createdPayments.pick(random));
+            case GRPC_REFUND -> grpcRefund(approvedPayments.pick(random));
+        };
+    }
+
+    private String idempotencyKey(int worker, AtomicLong sequence, SplittableRandom random) {
+        if (!usedKeys.isEmpty() && random.nextDouble() < options.getDuplicateRatio()) {
+            return usedKeys.pick(random);
+        }
+        String key = "lt-" + options.getRunId() + "-" + worker + "-" + sequence.incrementAndGet();
+        usedKeys.add(key);
+        return key;
+    }
+
+    // A duplicate key always comes with the same body, as a client retry would
+    private String merchantFor(String key) {
+        return "merchant-" + Math.floorMod(key.hashCode(), options.getMerchants());
+    }
+
+    private String restCreate(String key) throws IOException, InterruptedException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("merchantId", merchantFor(key));
+        body.put("amount", options.getAmount());
+        body.put("currency", "USD");
+        body.put("idempotencyKey", key);
+        body.put("customerId", "customer-" + key);
+        body.put("paymentMethod", "card");
+        body.put("webhookUrl", webhookUrl);
+
+        HttpRequest request = HttpRequest.newBuilder(paymentsUri)
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+            .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() < 300) {
+            JsonNode payment = objectMapper.readTree(response.body());
+            remember(payment.path("transactionId").asText(), payment.path("status").asText());
+        }
+        return "http-" + response.statusCode();
+    }
+
+    private String grpcCreate(String key) {
+        PaymentResponse response = paymentStub
+            .withDeadlineAfter(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+            .createPayment(PaymentRequest.newBuilder()
+                .setMerchantId(merchantFor(key))
+                .setAmount(options.getAmount().toPlainString())
+                .setCurrency("USD")
+                .setIdempotencyKey(key)
+                .setCustomerId("customer-" + key)
+                .setPaymentMethod("card")
+                .setWebhookUrl(webhookUrl)
+                .build());
+        remember(response.getTransactionId(), response.getStatus());
+        return "OK";
+    }
+
+    private String grpcGet(String transactionId) {
+        paymentStub
+            .withDeadlineAfter(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+            .getPayment(GetPaymentRequest.newBuilder().setTransactionId(transactionId).build());
+        return "OK";
+    }
+
+    private String grpcRefund(String transactionId) {
+        refundStub
+            .withDeadlineAfter(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+            .createRefund(RefundRequest.newBuilder()
+                .setTransactionId(transactionId)
+                .setAmount(options.getRefundAmount().toPlainString())
+                .setReason("load test")
+                .build());
+        return "OK";
+    }
+
+    private void remember(String transactionId, String status) {
+        if (transactionId == null || transactionId.isEmpty()) {
+            return;
+        }
+        createdPayments.add(transactionId);
+        if ("SUCCESS".equals(status)) {
+            approvedPayments.add(transactionId);
+        }
+    }
+
+    /**
+     * The last {@code capacity} values added, shared by all workers.
+     */
+    private static final class Recent {
+        private final AtomicReferenceArray<String> values;
+        private final AtomicLong added = new AtomicLong();
+
+        Recent(int capacity) {
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        void add(String value) {
+            values.set((int) (added.getAndIncrement() % values.length()), value);
+        }
+
+        boolean isEmpty() {
+            return added.get() == 0;
+        }
+
+        String pick(SplittableRandom random) {
+            int filled = (int) Math.min(added.get(), values.length());
+            String value = values.get(random.nextInt(filled));
+            // A slot claimed but not yet written by a concurrent add; try another
+            while (value == null) {
+                Thread.onSpinWait();
+                value = values.get(random.nextInt(filled));
+            }
+            return value;
+        }
+    }
+}
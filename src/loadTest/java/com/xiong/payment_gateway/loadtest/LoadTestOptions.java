@@ -0,0 +1,55 @@
+package com.xiong.payment_gateway.loadtest;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * {@code loadtest.*} options, passed on the command line like any other property,
+ * e.g. {@code --loadtest.concurrency=64 --loadtest.mix.grpc-refund=0}.
+ */
+@Data
+public class LoadTestOptions {
+    // Traffic before the measurement starts; recorded separately and left out of the report
+    private Duration warmup = Duration.ofSeconds(10);
+
+    private Duration duration = Duration.ofSeconds(30);
+
+    private int concurrency = 32;
+
+    // Target operations per second across all workers. 0 runs closed-loop, each worker
+    // sending as soon as its previous call returns; with a rate, latencies are measured
+    // from the scheduled send time so a stalled gateway shows up in the percentiles.
+    private int rate = 0;
+
+    // Relative weights; set one to 0 to leave the operation out
+    private Map<Operation, Integer> mix = new EnumMap<>(Map.of(
+        Operation.REST_CREATE, 30,
+        Operation.GRPC_CREATE, 30,
+        Operation.GRPC_GET, 25,
+        Operation.GRPC_REFUND, 15
+    ));
+
+    // Share of creates that resend a recently used idempotency key with the same body
+    private double duplicateRatio = 0.05;
+
+    private int merchants = 20;
+
+    private BigDecimal amount = new BigDecimal("100.00");
+
+    private BigDecimal refundAmount = new BigDecimal("1.00");
+
+    // Fixes the workload's random choices and, unless overridden, the simulated provider's
+    private long seed = 42;
+
+    // Added to every idempotency key. Set it when pointing at a persistent database so keys
+    // do not collide with earlier runs; the seeded provider draws from the keys, so only runs
+    // with the same run ID see the same outcomes.
+    private String runId = "";
+
+    private Path report = Path.of("build/reports/loadtest/report.txt");
+}
@@ -0,0 +1,81 @@
+package com.xiong.payment_gateway.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders the measured phase as {@code key=value} lines in a fixed order, so reports from
+ * two versions can be compared with a plain {@code diff}. Latencies are in milliseconds.
+ */
+class LoadTestReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final List<String> lines = new ArrayList<>();
+
+    LoadTestReport(LoadTestOptions options, LatencyStats stats) {
+        lines.add("# Payment gateway load test; latencies in ms over the measured phase");
+        add("config.warmup", options.getWarmup());
+        add("config.duration", options.getDuration());
+        add("config.concurrency", options.getConcurrency());
+        add("config.rate", options.getRate());
+        for (Operation operation : Operation.values()) {
+            add("config.mix." + operation.label(), options.getMix().getOrDefault(operation, 0));
+        }
+        add("config.duplicate-ratio", options.getDuplicateRatio());
+        add("config.merchants", options.getMerchants());
+        add("config.seed", options.getSeed());
+
+        double seconds = options.getDuration().toNanos() / 1e9;
+        Map<Operation, Histogram> histograms = stats.histograms();
+        long total = histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+        add("total.requests", total);
+        add("total.throughput", format(total / seconds));
+
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            String prefix = operation.label() + ".";
+            add(prefix + "requests", histogram.getTotalCount());
+            add(prefix + "throughput", format(histogram.getTotalCount() / seconds));
+            add(prefix + "latency.mean", millis(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                String name = percentile == 99.9 ? "p999" : "p" + (int) percentile;
+                add(prefix + "latency." + name, millis(histogram.getValueAtPercentile(percentile)));
+            }
+            add(prefix + "latency.max", millis(histogram.getMaxValue()));
+            stats.outcomes(operation).forEach((outcome, count) -> add(prefix + "outcome." + outcome, count));
+        }
+    }
+
+    String render() {
+        return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+    }
+
+    void write(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, render());
+    }
+
+    private void add(String key, Object value) {
+        lines.add(key + "=" + value);
+    }
+
+    private static String millis(double micros) {
+        return format(micros / 1000);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
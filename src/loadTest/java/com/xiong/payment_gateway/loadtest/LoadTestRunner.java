@@ -0,0 +1,115 @@
+package com.xiong.payment_gateway.loadtest;
+
+import com.sun.net.httpserver.HttpServer;
+import com.xiong.payment_gateway.PaymentGatewayApplication;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the gateway in-process against local stand-ins (H2 in PostgreSQL mode, an
+ * embedded Redis, the simulated provider and a webhook sink that accepts everything),
+ * runs {@link LoadGenerator} and writes a {@link LoadTestReport}.
+ *
+ * Arguments are Spring properties: {@code --loadtest.*} sets {@link LoadTestOptions}, anything
+ * else configures the gateway, e.g. {@code --payment.provider.simulated.latency.mean=50ms}
+ * or a {@code --spring.datasource.url} pointing at a real PostgreSQL.
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.profiles.active", "loadtest");
+        properties.put("server.port", String.valueOf(freePort()));
+        properties.put("grpc.server.port", String.valueOf(freePort()));
+        properties.put("spring.data.redis.port", String.valueOf(freePort()));
+        properties.put("payment.provider.simulated.seed", "42");
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            properties.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        // Reuse the workload seed for the provider unless it is set separately
+        if (properties.containsKey("loadtest.seed") && !containsArg(args, "payment.provider.simulated.seed")) {
+            properties.put("payment.provider.simulated.seed", properties.get("loadtest.seed"));
+        }
+
+        RedisServer redisServer = new RedisServer(Integer.parseInt(properties.get("spring.data.redis.port")));
+        HttpServer webhookSink = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        webhookSink.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        redisServer.start();
+        webhookSink.start();
+
+        ConfigurableApplicationContext context = null;
+        ManagedChannel channel = null;
+        try {
+            context = new SpringApplicationBuilder(PaymentGatewayApplication.class)
+                .run(properties.entrySet().stream()
+                    .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                    .toArray(String[]::new));
+            LoadTestOptions options = Binder.get(context.getEnvironment())
+                .bindOrCreate("loadtest", LoadTestOptions.class);
+
+            channel = ManagedChannelBuilder
+                .forAddress("localhost", Integer.parseInt(properties.get("grpc.server.port")))
+                .usePlaintext()
+                .build();
+            LoadGenerator generator = new LoadGenerator(options,
+                URI.create("http://localhost:" + properties.get("server.port")), channel,
+                "http://localhost:" + webhookSink.getAddress().getPort() + "/webhook");
+
+            log.info("Warming up for {}, then measuring for {} with {} workers",
+                options.getWarmup(), options.getDuration(), options.getConcurrency());
+            LatencyStats measured = new LatencyStats();
+            generator.run(new LatencyStats(), measured);
+
+            LoadTestReport report = new LoadTestReport(options, measured);
+            report.write(options.getReport());
+            log.info("Report written to {}\n{}", options.getReport().toAbsolutePath(), report.render());
+        } finally {
+            if (channel != null) {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+            if (context != null) {
+                context.close();
+            }
+            webhookSink.stop(0);
+            redisServer.stop();
+        }
+    }
+
+    private static boolean containsArg(String[] args, String name) {
+        for (String arg : args) {
+            if (arg.startsWith("--" + name + "=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
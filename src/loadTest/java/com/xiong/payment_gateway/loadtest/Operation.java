@@ -0,0 +1,21 @@
+package com.xiong.payment_gateway.loadtest;
+
+/**
+ * The calls the load generator mixes; the label names the operation in options and reports.
+ */
+public enum Operation {
+    REST_CREATE("rest-create"),
+    GRPC_CREATE("grpc-create"),
+    GRPC_GET("grpc-get"),
+    GRPC_REFUND("grpc-refund");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,3 @@
+-- H2 has no partial indexes, so the dispatcher's claim query gets the full index that
+-- WebhookPartitionMaintainer replaces on PostgreSQL
+CREATE INDEX IF NOT EXISTS idx_webhook_events_status_next_retry ON webhook_events (status, next_retry);
@@ -1,22 +1,42 @@
 package com.xiong.payment_gateway.config;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.xiong.payment_gateway.provider.PaymentProviderProperties;
+import com.xiong.payment_gateway.service.WebhookPartitionProperties;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
+@EnableConfigurationProperties({PaymentProviderProperties.class, WebhookPartitionProperties.class})
 public class AppConfig {
+    /**
+     * Shared non-blocking client for webhook delivery. Connections are pooled and reused
+     * per endpoint by the JDK client; HTTP/2 is negotiated where the endpoint supports it.
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public HttpClient webhookHttpClient() {
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
     }
 
     @Bean
     public ObjectMapper objectMapper() {
-        return new ObjectMapper();
+        return new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
     }
 }
@@ -0,0 +1,28 @@
+package com.xiong.payment_gateway.config;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executor that runs at most a fixed number of tasks at once and lets a fixed number more
+ * wait for a slot. Anything beyond is rejected with {@link RejectedExecutionException}.
+ * Created by {@link BoundedExecutors}.
+ */
+public interface BoundedExecutor extends Executor {
+    int activeCount();
+
+    int queuedCount();
+
+    /**
+     * Stop accepting tasks; those already accepted still run.
+     */
+    void shutdown();
+
+    /**
+     * Stop accepting tasks and drop those still waiting for a slot.
+     */
+    void shutdownNow();
+
+    boolean awaitTermination(Duration timeout) throws InterruptedException;
+}
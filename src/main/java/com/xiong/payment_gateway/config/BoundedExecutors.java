@@ -0,0 +1,164 @@
+package com.xiong.payment_gateway.config;
+
+import org.springframework.boot.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the private pools that keep blocking work (provider calls, gRPC stream work, status
+ * event delivery, Redis listeners) off request threads. On platform threads each is a fixed pool with a bounded
+ * queue. With {@code spring.threads.virtual.enabled=true} every task gets its own virtual
+ * thread instead, and a semaphore bulkhead keeps the same limits on running and waiting tasks.
+ *
+ * The executors are handed out rather than registered as {@code Executor} beans, which would
+ * replace Spring Boot's {@code applicationTaskExecutor}.
+ */
+@Component
+public class BoundedExecutors {
+    private final boolean virtualThreads;
+
+    public BoundedExecutors(Environment environment) {
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+    }
+
+    public BoundedExecutor create(String threadNamePrefix, int maxConcurrent, int maxQueued) {
+        return virtualThreads
+            ? new VirtualThreadBulkhead(new VirtualThreadTaskExecutor(threadNamePrefix), maxConcurrent, maxQueued)
+            : new PlatformThreadPool(threadNamePrefix, maxConcurrent, maxQueued);
+    }
+
+    private static final class PlatformThreadPool implements BoundedExecutor {
+        private final ThreadPoolExecutor pool;
+
+        private PlatformThreadPool(String threadNamePrefix, int maxConcurrent, int maxQueued) {
+            pool = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueued),
+                new CustomizableThreadFactory(threadNamePrefix)
+            );
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            pool.execute(task);
+        }
+
+        @Override
+        public int activeCount() {
+            return pool.getActiveCount();
+        }
+
+        @Override
+        public int queuedCount() {
+            return pool.getQueue().size();
+        }
+
+        @Override
+        public void shutdown() {
+            pool.shutdown();
+        }
+
+        @Override
+        public void shutdownNow() {
+            pool.shutdownNow();
+        }
+
+        @Override
+        public boolean awaitTermination(Duration timeout) throws InterruptedException {
+            return pool.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * One thread per task from {@code threads}; a task then waits on a fair semaphore for one of
+     * {@code maxConcurrent} slots. Running tasks are never interrupted.
+     */
+    static final class VirtualThreadBulkhead implements BoundedExecutor {
+        private final Executor threads;
+        private final int maxConcurrent;
+        private final int capacity;
+        // Running plus waiting tasks
+        private final Semaphore admitted;
+        private final Semaphore running;
+        private volatile boolean shutdown;
+        private volatile boolean dropWaiting;
+
+        VirtualThreadBulkhead(Executor threads, int maxConcurrent, int maxQueued) {
+            this.threads = threads;
+            this.maxConcurrent = maxConcurrent;
+            this.capacity = maxConcurrent + maxQueued;
+            this.admitted = new Semaphore(capacity);
+            this.running = new Semaphore(maxConcurrent, true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (shutdown || !admitted.tryAcquire()) {
+                throw new RejectedExecutionException(shutdown ? "Executor is shut down" : "Bulkhead is full");
+            }
+            try {
+                threads.execute(() -> run(task));
+            } catch (RuntimeException e) {
+                admitted.release();
+                throw e;
+            }
+        }
+
+        private void run(Runnable task) {
+            try {
+                running.acquireUninterruptibly();
+                try {
+                    if (!dropWaiting) {
+                        task.run();
+                    }
+                } finally {
+                    running.release();
+                }
+            } finally {
+                admitted.release();
+            }
+        }
+
+        @Override
+        public int activeCount() {
+            return maxConcurrent - running.availablePermits();
+        }
+
+        @Override
+        public int queuedCount() {
+            return Math.max(capacity - admitted.availablePermits() - activeCount(), 0);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public void shutdownNow() {
+            shutdown = true;
+            dropWaiting = true;
+        }
+
+        @Override
+        public boolean awaitTermination(Duration timeout) throws InterruptedException {
+            if (!admitted.tryAcquire(capacity, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            admitted.release(capacity);
+            return true;
+        }
+    }
+}
@@ -1,10 +1,66 @@
 package com.xiong.payment_gateway.config;
 
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.binder.grpc.DefaultGrpcServerObservationConvention;
+import io.micrometer.core.instrument.binder.grpc.GrpcObservationDocumentation.LowCardinalityKeyNames;
+import io.micrometer.core.instrument.binder.grpc.GrpcServerObservationContext;
+import io.micrometer.core.instrument.binder.grpc.ObservationGrpcServerInterceptor;
+import io.micrometer.observation.ObservationRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class GrpcConfig {
     // gRPC configuration is handled automatically by grpc-spring-boot-starter
     // The server will start on the configured port (default 9090)
     // All @GrpcService annotated beans will be registered automatically
+
+    /**
+     * Observes every call as {@code grpc.server}, tagged with the method and status code:
+     * per-method latency on /actuator/prometheus, and a span per call once tracing is enabled.
+     * The starter's own metrics interceptor does not activate on this Spring Boot version.
+     */
+    @GrpcGlobalServerInterceptor
+    ObservationGrpcServerInterceptor observationGrpcServerInterceptor(ObservationRegistry observationRegistry) {
+        ObservationGrpcServerInterceptor interceptor = new ObservationGrpcServerInterceptor(observationRegistry);
+        interceptor.setCustomConvention(new PeerAsHighCardinalityConvention());
+        return interceptor;
+    }
+
+    /**
+     * The default convention tags metrics with the client's address and ephemeral port, which
+     * would create a new time series per connection; keep those on spans only.
+     */
+    static class PeerAsHighCardinalityConvention extends DefaultGrpcServerObservationConvention {
+        @Override
+        public KeyValues getLowCardinalityKeyValues(GrpcServerObservationContext context) {
+            List<KeyValue> kept = new ArrayList<>();
+            for (KeyValue keyValue : super.getLowCardinalityKeyValues(context)) {
+                if (!isPeer(keyValue)) {
+                    kept.add(keyValue);
+                }
+            }
+            return KeyValues.of(kept);
+        }
+
+        @Override
+        public KeyValues getHighCardinalityKeyValues(GrpcServerObservationContext context) {
+            List<KeyValue> peer = new ArrayList<>();
+            for (KeyValue keyValue : super.getLowCardinalityKeyValues(context)) {
+                if (isPeer(keyValue)) {
+                    peer.add(keyValue);
+                }
+            }
+            return KeyValues.of(peer);
+        }
+
+        private static boolean isPeer(KeyValue keyValue) {
+            return keyValue.getKey().equals(LowCardinalityKeyNames.PEER_NAME.asString())
+                || keyValue.getKey().equals(LowCardinalityKeyNames.PEER_PORT.asString());
+        }
+    }
 }
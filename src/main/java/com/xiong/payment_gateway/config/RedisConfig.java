@@ -0,0 +1,38 @@
+package com.xiong.payment_gateway.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+    // Listeners only decode and hand messages off (cache invalidations, status events), so a
+    // few threads suffice; the queue absorbs bursts and anything beyond it is dropped
+    private static final int LISTENER_THREADS = 4;
+    private static final int LISTENER_QUEUE_CAPACITY = 10_000;
+
+    private final BoundedExecutor listenerExecutor;
+
+    public RedisConfig(BoundedExecutors executors) {
+        this.listenerExecutor = executors.create("redis-listener-", LISTENER_THREADS, LISTENER_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Shared pub/sub listener container, used to fan out cache invalidations across gateway nodes.
+     * Messages are dispatched on a bounded pool instead of a new thread per message.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(listenerExecutor);
+        return container;
+    }
+
+    @PreDestroy
+    void shutdownListenerExecutor() {
+        listenerExecutor.shutdown();
+    }
+}
@@ -0,0 +1,33 @@
+package com.xiong.payment_gateway.config;
+
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+/**
+ * Opt-in virtual-thread execution, active only with {@code spring.threads.virtual.enabled=true}
+ * on Java 21+. Spring Boot itself moves Tomcat request handling, {@code @Async} and
+ * {@code @Scheduled} work onto virtual threads; this adds the gRPC server executor, and
+ * {@link BoundedExecutors} moves the provider, gRPC stream and status event pools.
+ *
+ * Virtual threads are pinned to their carrier while blocked inside {@code synchronized}
+ * on Java 21-23, so shared state on request paths should use {@code java.util.concurrent}
+ * structures or {@code ReentrantLock} instead. Run with {@code -Djdk.tracePinnedThreads=short}
+ * to report any pinning that remains.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class VirtualThreadConfig {
+    @Bean
+    public GrpcServerConfigurer virtualThreadGrpcServerConfigurer() {
+        return serverBuilder -> {
+            log.info("Running gRPC handlers on virtual threads");
+            serverBuilder.executor(new VirtualThreadTaskExecutor("grpc-vt-"));
+        };
+    }
+}
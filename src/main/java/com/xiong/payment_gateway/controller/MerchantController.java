@@ -0,0 +1,46 @@
+package com.xiong.payment_gateway.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.xiong.payment_gateway.dto.MerchantVolumeReport;
+import com.xiong.payment_gateway.service.MerchantVolumeService;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/v1/merchants")
+@Slf4j
+public class MerchantController {
+    private final MerchantVolumeService volumeService;
+
+    public MerchantController(MerchantVolumeService volumeService) {
+        this.volumeService = volumeService;
+    }
+
+    /**
+     * Retrieve a merchant's pre-aggregated payment and refund volume
+     * 
+     * @param merchantId the merchant whose volume to read
+     * @param from       first day (ISO date), inclusive; defaults to today
+     * @param to         last day, inclusive; defaults to {@code from}
+     * @return totals per currency over the range, and the per-day figures they add up
+     * @throws PaymentGatewayException if the range is inverted or longer than 366 days
+     */
+    @GetMapping("/{merchantId}/volume")
+    public ResponseEntity<MerchantVolumeReport> getVolume(
+        @PathVariable("merchantId") String merchantId,
+        @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        log.info("Fetching volume of merchant: {}", merchantId);
+        
+        LocalDate first = from != null ? from : LocalDate.now();
+        LocalDate last = to != null ? to : first;
+        return ResponseEntity.ok(volumeService.getVolume(merchantId, first, last));
+    }
+}
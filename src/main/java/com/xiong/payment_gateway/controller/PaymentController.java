@@ -2,23 +2,43 @@ package com.xiong.payment_gateway.controller;
 
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.xiong.payment_gateway.dto.ApiResponse;
+import com.xiong.payment_gateway.dto.PaymentBatchRequest;
+import com.xiong.payment_gateway.dto.PaymentBatchResponse;
+import com.xiong.payment_gateway.dto.PaymentPage;
 import com.xiong.payment_gateway.dto.PaymentRequest;
 import com.xiong.payment_gateway.dto.PaymentResponse;
+import com.xiong.payment_gateway.dto.PaymentStatusEvent;
 import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.service.PaymentSearchService;
 import com.xiong.payment_gateway.service.PaymentService;
+import com.xiong.payment_gateway.service.PaymentStatusEventBus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/v1/payments")
 @Slf4j
 public class PaymentController {
+    // Clients reconnect after this; a transaction watch resumes with the current status
+    private static final Duration SSE_TIMEOUT = Duration.ofMinutes(10);
+
     private final PaymentService paymentService;
+    private final PaymentSearchService searchService;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentSearchService searchService) {
         this.paymentService = paymentService;
+        this.searchService = searchService;
     }
 
     /**
@@ -27,6 +47,7 @@ public class PaymentController {
      * @param request the payment request containing payment details
      * @return PaymentResponse with transaction details
      *         - 201 CREATED for new payments
+     *         - 202 ACCEPTED for new payments still PROCESSING with the provider
      *         - 409 CONFLICT for duplicate requests (idempotent)
      * @throws IllegalArgumentException if request validation fails
      * @throws PaymentGatewayException if payment processing fails
@@ -44,6 +65,53 @@ public class PaymentController {
             .body(response.getData());
     }
 
+    /**
+     * Create many payment transactions in one call
+     * 
+     * @param request up to 1000 payment requests
+     * @return per-item results in request order (CREATED, DUPLICATE or REJECTED)
+     *         - 200 OK once the batch has been processed, even if some items were rejected
+     * @throws PaymentGatewayException if the batch is empty or too large
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<PaymentBatchResponse> createPaymentsBatch(
+        @Valid @RequestBody PaymentBatchRequest request
+    ) {
+        log.info("Processing payment batch of {} items", request.getPayments().size());
+        
+        PaymentBatchResponse response = paymentService.processPaymentsBatch(request.getPayments());
+        
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * List a merchant's transactions, oldest first, one page at a time
+     * 
+     * @param merchantId the merchant whose transactions to list
+     * @param status     optional status filter
+     * @param from       optional inclusive lower bound on the creation time (ISO local date-time)
+     * @param to         optional exclusive upper bound on the creation time
+     * @param cursor     the previous page's {@code nextCursor}; omit for the first page
+     * @param limit      page size, at most 1000
+     * @return the page and the cursor of the next one (null on the last page)
+     * @throws PaymentGatewayException if the page size, time range or cursor is invalid
+     */
+    @GetMapping
+    public ResponseEntity<PaymentPage> listPayments(
+        @RequestParam("merchantId") String merchantId,
+        @RequestParam(name = "status", required = false) TransactionStatus status,
+        @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+        @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+        @RequestParam(name = "cursor", required = false) String cursor,
+        @RequestParam(name = "limit", defaultValue = "" + PaymentSearchService.DEFAULT_PAGE_SIZE) int limit
+    ) {
+        log.info("Listing payments of merchant: {}", merchantId);
+        
+        return ResponseEntity.ok(searchService.listPayments(merchantId, status, from, to, cursor, limit));
+    }
+
     /**
      * Retrieve a payment transaction by ID
      * 
@@ -61,4 +129,66 @@ public class PaymentController {
         
         return ResponseEntity.ok(transaction);
     }
+
+    /**
+     * Stream status changes of a transaction as server-sent events, starting with its
+     * current status. The stream ends after a terminal status (FAILED or REFUNDED).
+     * 
+     * @param transactionId the transaction to watch
+     * @return {@code status} events carrying a PaymentStatusEvent
+     * @throws ResourceNotFoundException if transaction not found
+     */
+    @GetMapping(path = "/{transactionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter watchPayment(
+        @PathVariable("transactionId") String transactionId
+    ) {
+        log.info("Watching transaction: {}", transactionId);
+        
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT.toMillis());
+        PaymentStatusEventBus.Subscription subscription =
+            paymentService.watchTransaction(transactionId, event -> {
+                send(emitter, event);
+                if (event.isTerminal()) {
+                    emitter.complete();
+                }
+            });
+        return bind(emitter, subscription);
+    }
+
+    /**
+     * Stream status changes of all transactions of a merchant as server-sent events
+     * 
+     * @param merchantId the merchant to watch
+     * @return {@code status} events carrying a PaymentStatusEvent
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter watchMerchantPayments(
+        @RequestParam("merchantId") String merchantId
+    ) {
+        log.info("Watching payments of merchant: {}", merchantId);
+        
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT.toMillis());
+        PaymentStatusEventBus.Subscription subscription =
+            paymentService.watchMerchant(merchantId, event -> send(emitter, event));
+        return bind(emitter, subscription);
+    }
+
+    private static SseEmitter bind(SseEmitter emitter, PaymentStatusEventBus.Subscription subscription) {
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, PaymentStatusEvent event) {
+        try {
+            emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.getVersion()))
+                .name("status")
+                .data(event, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // The subscription closes itself when its listener fails
+            throw new UncheckedIOException(e);
+        }
+    }
 }
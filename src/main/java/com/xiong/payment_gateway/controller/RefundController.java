@@ -6,8 +6,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.xiong.payment_gateway.dto.RefundBatchRequest;
+import com.xiong.payment_gateway.dto.RefundBatchResponse;
 import com.xiong.payment_gateway.dto.RefundRequest;
 import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.RefundStatus;
 import com.xiong.payment_gateway.service.RefundService;
 
 @RestController
@@ -25,6 +28,8 @@ public class RefundController {
      * 
      * @param request the refund request containing transaction ID and refund amount
      * @return Refund details with status
+     *         - 201 CREATED once the provider has answered (COMPLETED or FAILED)
+     *         - 202 ACCEPTED if the refund is still PENDING with the provider
      * @throws IllegalArgumentException if request validation fails
      * @throws ResourceNotFoundException if transaction not found
      * @throws PaymentGatewayException if refund processing fails
@@ -37,7 +42,28 @@ public class RefundController {
         
         // Return 201 CREATED for successful refund creation
         return ResponseEntity
-            .status(HttpStatus.CREATED)
+            .status(refund.getStatus() == RefundStatus.PENDING ? HttpStatus.ACCEPTED : HttpStatus.CREATED)
             .body(refund);
     }
-}
\ No newline at end of file
+
+    /**
+     * Process many refunds in one call. Refunds of the same transaction are applied in request
+     * order, so each one sees the balance left by the previous ones.
+     * 
+     * @param request up to 1000 refund requests
+     * @return per-item results in request order (CREATED or REJECTED); a created refund may
+     *         still be PENDING with the provider
+     *         - 200 OK once the batch has been processed, even if some items were rejected
+     * @throws PaymentGatewayException if the batch is empty or too large
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<RefundBatchResponse> createRefundsBatch(
+        @Valid @RequestBody RefundBatchRequest request
+    ) {
+        log.info("Processing refund batch of {} items", request.getRefunds().size());
+        
+        RefundBatchResponse response = refundService.processRefundsBatch(request.getRefunds());
+        
+        return ResponseEntity.ok(response);
+    }
+}
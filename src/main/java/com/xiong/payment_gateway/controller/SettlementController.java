@@ -0,0 +1,67 @@
+package com.xiong.payment_gateway.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.xiong.payment_gateway.export.SettlementFormat;
+import com.xiong.payment_gateway.service.SettlementExportService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/v1/settlements")
+@Slf4j
+public class SettlementController {
+    private final SettlementExportService exportService;
+
+    public SettlementController(SettlementExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Download a merchant's settlement file, streamed with chunked transfer encoding while
+     * it is read from the database
+     * 
+     * @param merchantId the merchant to settle
+     * @param date       a whole day to export; alternatively give {@code from} and {@code to}
+     * @param from       inclusive start of the window (ISO local date-time)
+     * @param to         exclusive end of the window
+     * @param format     {@code CSV} (default) or {@code COLUMNAR}
+     * @param gzip       compress the file with gzip
+     * @return the file as an attachment
+     * @throws PaymentGatewayException if the merchant or window is missing or invalid
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportSettlement(
+        @RequestParam("merchantId") String merchantId,
+        @RequestParam(name = "date", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+        @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+        @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+        @RequestParam(name = "format", defaultValue = "CSV") SettlementFormat format,
+        @RequestParam(name = "gzip", defaultValue = "false") boolean gzip
+    ) {
+        LocalDateTime windowStart = date != null ? date.atStartOfDay() : from;
+        LocalDateTime windowEnd = date != null ? date.plusDays(1).atStartOfDay() : to;
+        exportService.validate(merchantId, windowStart, windowEnd);
+        log.info("Exporting settlement of merchant {} for [{}, {})", merchantId, windowStart, windowEnd);
+
+        String filename = "settlement-" + merchantId + "-" + windowStart.toLocalDate() + "." + format.extension()
+            + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out ->
+            exportService.export(merchantId, windowStart, windowEnd, format, gzip, out);
+        return ResponseEntity.ok()
+            .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType(format.contentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+            .body(body);
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
  * Test controller for webhook development and testing.
@@ -18,8 +19,9 @@ import java.util.*;
 @Slf4j
 public class WebhookTestController {
     
-    // In-memory storage for recent webhook events (for testing only)
-    private static final List<Map<String, Object>> webhookHistory = Collections.synchronizedList(new ArrayList<>());
+    // In-memory storage for recent webhook events (for testing only).
+    // Lock-free so request threads (including virtual threads) never contend on a monitor.
+    private static final Deque<Map<String, Object>> webhookHistory = new ConcurrentLinkedDeque<>();
     private static final int MAX_HISTORY = 50;
 
     /**
@@ -47,11 +49,11 @@ public class WebhookTestController {
         event.put("receivedAt", new Date());
         event.put("payload", payload);
         
-        webhookHistory.add(0, event);
+        webhookHistory.addFirst(event);
         
         // Keep only recent events
-        if (webhookHistory.size() > MAX_HISTORY) {
-            webhookHistory.remove(webhookHistory.size() - 1);
+        while (webhookHistory.size() > MAX_HISTORY) {
+            webhookHistory.pollLast();
         }
         
         return ResponseEntity
@@ -0,0 +1,30 @@
+package com.xiong.payment_gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A merchant's volume in one currency, either on one day or, with a null {@code date}, over
+ * the whole requested range. Counts and amounts are of payments and refunds finalized then.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MerchantVolume {
+    private String currency;
+    private LocalDate date;
+    // Successful payments
+    private long paymentCount;
+    private BigDecimal grossAmount;
+    private long failedCount;
+    // Completed refunds
+    private long refundCount;
+    private BigDecimal refundedAmount;
+    // grossAmount - refundedAmount
+    private BigDecimal netAmount;
+}
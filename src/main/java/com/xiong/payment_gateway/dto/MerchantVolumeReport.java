@@ -0,0 +1,20 @@
+package com.xiong.payment_gateway.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A merchant's volume between two dates (both inclusive): one total per currency, and the
+ * per-day figures it adds up, oldest first. Days without activity are left out.
+ */
+@Data
+@Builder
+public class MerchantVolumeReport {
+    private String merchantId;
+    private LocalDate from;
+    private LocalDate to;
+    private List<MerchantVolume> totals;
+    private List<MerchantVolume> daily;
+}
@@ -0,0 +1,23 @@
+package com.xiong.payment_gateway.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a single item in a payment batch, in request order.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PaymentBatchItemResult {
+    public enum Outcome {
+        CREATED, DUPLICATE, REJECTED
+    }
+
+    private String idempotencyKey;
+    private Outcome outcome;
+    private PaymentResponse payment;
+    private String errorCode;
+    private String errorMessage;
+}
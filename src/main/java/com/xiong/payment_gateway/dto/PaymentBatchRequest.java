@@ -0,0 +1,17 @@
+package com.xiong.payment_gateway.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Bulk payment creation. Items are validated individually by the service so that
+ * one bad item is reported in its own result instead of failing the whole batch.
+ */
+@Data
+public class PaymentBatchRequest {
+    @NotEmpty(message = "At least one payment is required")
+    @Size(max = 1000, message = "A batch may contain at most 1000 payments")
+    private List<PaymentRequest> payments;
+}
@@ -0,0 +1,14 @@
+package com.xiong.payment_gateway.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@Builder
+public class PaymentBatchResponse {
+    private int created;
+    private int duplicates;
+    private int rejected;
+    private List<PaymentBatchItemResult> results;
+}
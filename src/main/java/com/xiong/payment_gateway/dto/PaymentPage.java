@@ -0,0 +1,16 @@
+package com.xiong.payment_gateway.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.util.List;
+
+/**
+ * One page of a payment listing. Pass {@code nextCursor} back to get the following page;
+ * it is null on the last page.
+ */
+@Data
+@Builder
+public class PaymentPage {
+    private List<PaymentSummary> items;
+    private String nextCursor;
+}
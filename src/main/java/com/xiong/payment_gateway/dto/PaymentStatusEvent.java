@@ -0,0 +1,30 @@
+package com.xiong.payment_gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A committed status of a payment transaction, pushed to status watchers.
+ * {@code version} increases with every change of the transaction, so watchers
+ * can drop events they have already seen.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentStatusEvent {
+    private String transactionId;
+    private String merchantId;
+    private String status;
+    private BigDecimal amount;
+    private BigDecimal refundedAmount;
+    private String currency;
+    private Long version;
+    private LocalDateTime updatedAt;
+    // No further transitions will follow (FAILED or fully REFUNDED)
+    private boolean terminal;
+}
@@ -0,0 +1,30 @@
+package com.xiong.payment_gateway.dto;
+
+import com.xiong.payment_gateway.models.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A payment transaction as listed by the search API. Read straight from the query as a
+ * projection, so listing never materializes (or dirty-checks) entities and leaves the
+ * metadata column unread.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSummary {
+    private String transactionId;
+    private String merchantId;
+    private TransactionStatus status;
+    private BigDecimal amount;
+    private BigDecimal refundedAmount;
+    private String currency;
+    private String customerId;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
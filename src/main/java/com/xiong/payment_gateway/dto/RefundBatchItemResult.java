@@ -0,0 +1,25 @@
+package com.xiong.payment_gateway.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.xiong.payment_gateway.models.Refund;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a single item in a refund batch, in request order. A created refund carries
+ * its status: COMPLETED or FAILED once the provider has answered, otherwise PENDING.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RefundBatchItemResult {
+    public enum Outcome {
+        CREATED, REJECTED
+    }
+
+    private String transactionId;
+    private Outcome outcome;
+    private Refund refund;
+    private String errorCode;
+    private String errorMessage;
+}
@@ -0,0 +1,17 @@
+package com.xiong.payment_gateway.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Bulk refund creation. Items are validated individually by the service so that
+ * one bad item is reported in its own result instead of failing the whole batch.
+ */
+@Data
+public class RefundBatchRequest {
+    @NotEmpty(message = "At least one refund is required")
+    @Size(max = 1000, message = "A batch may contain at most 1000 refunds")
+    private List<RefundRequest> refunds;
+}
@@ -0,0 +1,13 @@
+package com.xiong.payment_gateway.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@Builder
+public class RefundBatchResponse {
+    private int created;
+    private int rejected;
+    private List<RefundBatchItemResult> results;
+}
@@ -0,0 +1,29 @@
+package com.xiong.payment_gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One line of a settlement export: a payment or a refund, read as a query projection.
+ * For a payment {@code id} and {@code transactionId} are the same.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettlementRow {
+    public static final String PAYMENT = "PAYMENT";
+    public static final String REFUND = "REFUND";
+
+    private String recordType;
+    private String id;
+    private String transactionId;
+    private String merchantId;
+    private String status;
+    private BigDecimal amount;
+    private String currency;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
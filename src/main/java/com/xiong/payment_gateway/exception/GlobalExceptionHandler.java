@@ -1,6 +1,7 @@
 package com.xiong.payment_gateway.exception;
 
 import com.xiong.payment_gateway.dto.ErrorResponse;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -20,6 +21,11 @@ import java.util.UUID;
 @RestControllerAdvice
 @Slf4j
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+    private final GatewayMetrics metrics;
+
+    public GlobalExceptionHandler(GatewayMetrics metrics) {
+        this.metrics = metrics;
+    }
 
     /**
      * Handle PaymentGatewayException - custom business logic exceptions
@@ -30,6 +36,7 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
             WebRequest request) {
         
         log.warn("PaymentGatewayException: {}", ex.getMessage());
+        metrics.recordError("rest", ex);
         
         ErrorResponse errorResponse = ErrorResponse.builder()
                 .status(ex.getHttpStatus().value())
@@ -52,6 +59,7 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
             WebRequest request) {
         
         log.warn("ResourceNotFoundException: {}", ex.getMessage());
+        metrics.recordError("rest", ex);
         
         ErrorResponse errorResponse = ErrorResponse.builder()
                 .status(HttpStatus.NOT_FOUND.value())
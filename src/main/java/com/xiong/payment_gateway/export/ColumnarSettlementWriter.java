@@ -0,0 +1,207 @@
+package com.xiong.payment_gateway.export;
+
+import com.xiong.payment_gateway.dto.SettlementRow;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compact columnar binary encoding, in the spirit of Parquet row groups without its
+ * dependencies. Rows are buffered {@value #GROUP_SIZE} at a time and each group is written
+ * column by column, so repetitive columns (type, merchant, status, currency) dictionary-encode
+ * to a byte per row and sorted timestamps delta-encode to a few bytes.
+ *
+ * <pre>
+ * file   = "PGSX" version:u8 columns:u8 (name:modified-UTF-8 type:u8)* group* 0:varint rows:i64
+ * group  = rows:varint chunk*                          one chunk per column, in header order
+ * DICTIONARY chunk = entries:varint (length:varint utf-8)*, then per row index+1:varint
+ * STRING chunk     = per row length+1:varint utf-8
+ * DECIMAL chunk    = per row scale+1:varint length:varint unscaled-two's-complement-bytes
+ * TIMESTAMP chunk  = per row zigzag(micros - previous micros)+1:varint
+ * </pre>
+ *
+ * Varints are unsigned LEB128; 0 encodes null in every chunk. Timestamps are local
+ * date-times, as stored, counted in microseconds from 1970-01-01T00:00; the first delta of
+ * each chunk is taken from 0.
+ */
+final class ColumnarSettlementWriter implements SettlementWriter {
+    static final byte[] MAGIC = {'P', 'G', 'S', 'X'};
+    static final int VERSION = 1;
+    static final int GROUP_SIZE = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    enum ColumnType {
+        DICTIONARY, STRING, DECIMAL, TIMESTAMP
+    }
+
+    private enum Column {
+        RECORD_TYPE("record_type", ColumnType.DICTIONARY, SettlementRow::getRecordType),
+        ID("id", ColumnType.STRING, SettlementRow::getId),
+        TRANSACTION_ID("transaction_id", ColumnType.STRING, SettlementRow::getTransactionId),
+        MERCHANT_ID("merchant_id", ColumnType.DICTIONARY, SettlementRow::getMerchantId),
+        STATUS("status", ColumnType.DICTIONARY, SettlementRow::getStatus),
+        AMOUNT("amount", ColumnType.DECIMAL, SettlementRow::getAmount),
+        CURRENCY("currency", ColumnType.DICTIONARY, SettlementRow::getCurrency),
+        CREATED_AT("created_at", ColumnType.TIMESTAMP, SettlementRow::getCreatedAt),
+        UPDATED_AT("updated_at", ColumnType.TIMESTAMP, SettlementRow::getUpdatedAt);
+
+        private final String columnName;
+        private final ColumnType type;
+        private final Function<SettlementRow, Object> accessor;
+
+        Column(String columnName, ColumnType type, Function<SettlementRow, Object> accessor) {
+            this.columnName = columnName;
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+
+    private final DataOutputStream out;
+    private final SettlementRow[] group = new SettlementRow[GROUP_SIZE];
+    // Reused across groups and columns
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> dictionaryEntries = new ArrayList<>();
+    private int buffered;
+    private long rows;
+    private boolean headerWritten;
+
+    ColumnarSettlementWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    @Override
+    public void write(SettlementRow row) throws IOException {
+        group[buffered++] = row;
+        if (buffered == GROUP_SIZE) {
+            writeGroup();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writeGroup();
+        writeHeader();
+        writeVarint(0);
+        out.writeLong(rows);
+        out.flush();
+    }
+
+    private void writeHeader() throws IOException {
+        if (headerWritten) {
+            return;
+        }
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(Column.values().length);
+        for (Column column : Column.values()) {
+            out.writeUTF(column.columnName);
+            out.writeByte(column.type.ordinal());
+        }
+        headerWritten = true;
+    }
+
+    private void writeGroup() throws IOException {
+        writeHeader();
+        if (buffered == 0) {
+            return;
+        }
+        writeVarint(buffered);
+        for (Column column : Column.values()) {
+            switch (column.type) {
+                case DICTIONARY -> writeDictionaryChunk(column);
+                case STRING -> writeStringChunk(column);
+                case DECIMAL -> writeDecimalChunk(column);
+                case TIMESTAMP -> writeTimestampChunk(column);
+            }
+        }
+        rows += buffered;
+        // Drop the references so the rows can be collected
+        Arrays.fill(group, 0, buffered, null);
+        buffered = 0;
+    }
+
+    private void writeDictionaryChunk(Column column) throws IOException {
+        dictionary.clear();
+        dictionaryEntries.clear();
+        for (int i = 0; i < buffered; i++) {
+            String value = (String) column.accessor.apply(group[i]);
+            if (value != null && dictionary.putIfAbsent(value, dictionaryEntries.size()) == null) {
+                dictionaryEntries.add(value);
+            }
+        }
+        writeVarint(dictionaryEntries.size());
+        for (String entry : dictionaryEntries) {
+            writeBytes(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < buffered; i++) {
+            String value = (String) column.accessor.apply(group[i]);
+            writeVarint(value == null ? 0 : dictionary.get(value) + 1);
+        }
+    }
+
+    private void writeStringChunk(Column column) throws IOException {
+        for (int i = 0; i < buffered; i++) {
+            String value = (String) column.accessor.apply(group[i]);
+            if (value == null) {
+                writeVarint(0);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes.length + 1L);
+                out.write(bytes);
+            }
+        }
+    }
+
+    private void writeDecimalChunk(Column column) throws IOException {
+        for (int i = 0; i < buffered; i++) {
+            BigDecimal value = (BigDecimal) column.accessor.apply(group[i]);
+            if (value == null) {
+                writeVarint(0);
+            } else {
+                // Negative scales (e.g. 1E+3) are written as scale 0
+                writeVarint(Math.max(value.scale(), 0) + 1L);
+                writeBytes(value.setScale(Math.max(value.scale(), 0)).unscaledValue().toByteArray());
+            }
+        }
+    }
+
+    private void writeTimestampChunk(Column column) throws IOException {
+        long previous = 0;
+        for (int i = 0; i < buffered; i++) {
+            LocalDateTime value = (LocalDateTime) column.accessor.apply(group[i]);
+            if (value == null) {
+                writeVarint(0);
+            } else {
+                long micros = value.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + value.getNano() / 1_000;
+                long delta = micros - previous;
+                writeVarint(((delta << 1) ^ (delta >> 63)) + 1);
+                previous = micros;
+            }
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
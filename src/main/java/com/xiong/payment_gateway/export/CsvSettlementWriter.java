@@ -0,0 +1,106 @@
+package com.xiong.payment_gateway.export;
+
+import com.xiong.payment_gateway.dto.SettlementRow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * RFC 4180 CSV with a header line. Timestamps are ISO local date-times, amounts plain decimals.
+ */
+final class CsvSettlementWriter implements SettlementWriter {
+    static final String HEADER =
+        "record_type,id,transaction_id,merchant_id,status,amount,currency,created_at,updated_at";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer out;
+    private boolean headerWritten;
+
+    CsvSettlementWriter(OutputStream out) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(SettlementRow row) throws IOException {
+        if (!headerWritten) {
+            out.write(HEADER);
+            out.write("\r\n");
+            headerWritten = true;
+        }
+        field(row.getRecordType());
+        out.write(',');
+        field(row.getId());
+        out.write(',');
+        field(row.getTransactionId());
+        out.write(',');
+        field(row.getMerchantId());
+        out.write(',');
+        field(row.getStatus());
+        out.write(',');
+        field(row.getAmount());
+        out.write(',');
+        field(row.getCurrency());
+        out.write(',');
+        field(row.getCreatedAt());
+        out.write(',');
+        field(row.getUpdatedAt());
+        out.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!headerWritten) {
+            out.write(HEADER);
+            out.write("\r\n");
+            headerWritten = true;
+        }
+        out.flush();
+    }
+
+    private void field(BigDecimal value) throws IOException {
+        if (value != null) {
+            out.write(value.toPlainString());
+        }
+    }
+
+    private void field(LocalDateTime value) throws IOException {
+        if (value != null) {
+            out.write(value.toString());
+        }
+    }
+
+    private void field(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuoting(value)) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
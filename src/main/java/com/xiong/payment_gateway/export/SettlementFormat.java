@@ -0,0 +1,31 @@
+package com.xiong.payment_gateway.export;
+
+import java.io.OutputStream;
+import java.util.function.Function;
+
+public enum SettlementFormat {
+    CSV("csv", "text/csv", CsvSettlementWriter::new),
+    COLUMNAR("pgsx", "application/octet-stream", ColumnarSettlementWriter::new);
+
+    private final String extension;
+    private final String contentType;
+    private final Function<OutputStream, SettlementWriter> factory;
+
+    SettlementFormat(String extension, String contentType, Function<OutputStream, SettlementWriter> factory) {
+        this.extension = extension;
+        this.contentType = contentType;
+        this.factory = factory;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public SettlementWriter writerFor(OutputStream out) {
+        return factory.apply(out);
+    }
+}
@@ -0,0 +1,18 @@
+package com.xiong.payment_gateway.export;
+
+import com.xiong.payment_gateway.dto.SettlementRow;
+
+import java.io.IOException;
+
+/**
+ * Encodes settlement rows onto an output stream as they arrive. Implementations buffer at
+ * most a bounded number of rows, so memory stays flat however large the export is.
+ */
+public interface SettlementWriter {
+    void write(SettlementRow row) throws IOException;
+
+    /**
+     * Write anything still buffered and the format's trailer. Does not close the stream.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,204 @@
+package com.xiong.payment_gateway.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Server side of one bidirectional ingestion stream ({@code StreamPayments}, {@code StreamRefunds}).
+ *
+ * Inbound messages are pulled with manual flow control: the handler asks for at most
+ * {@code maxInFlight} requests up front and one more each time a result has actually been
+ * written to the client. A slow database (results take long to produce) or a slow client
+ * (results cannot be written while the transport is not ready) therefore stops further
+ * reads, and gRPC flow control pushes that backpressure to the sender. Results are written
+ * as requests complete, so they may arrive out of order; clients correlate them by the key
+ * the result echoes.
+ *
+ * With an ordering key, requests sharing a key are processed one after another in arrival
+ * order, while requests with different keys still run in parallel.
+ *
+ * @param <T> inbound request message
+ * @param <R> result message
+ */
+@Slf4j
+final class BatchStreamHandler<T, R> implements StreamObserver<T> {
+    /**
+     * Builds the result for a request that could not be processed.
+     */
+    @FunctionalInterface
+    interface ErrorResult<T, R> {
+        R create(T request, String errorCode, String message);
+    }
+
+    private final String name;
+    private final ServerCallStreamObserver<R> responses;
+    private final Function<T, R> processor;
+    private final ErrorResult<T, R> errorResult;
+    private final Function<T, ?> orderingKey;
+    private final Executor executor;
+
+    // Guards every field below and serializes writes to the response observer
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Queue<R> ready = new ArrayDeque<>();
+    // Last task scheduled per ordering key, removed once it has run
+    private final Map<Object, CompletableFuture<Void>> tails = new HashMap<>();
+    private int outstanding;
+    private boolean inputCompleted;
+    private boolean closed;
+
+    /**
+     * @param name        what the stream carries, for logs, e.g. {@code payment}
+     * @param orderingKey key of requests that must be processed in order, or null for none
+     */
+    BatchStreamHandler(
+            String name,
+            StreamObserver<R> responseObserver,
+            Function<T, R> processor,
+            ErrorResult<T, R> errorResult,
+            Function<T, ?> orderingKey,
+            Executor executor,
+            int maxInFlight) {
+        this.name = name;
+        this.responses = (ServerCallStreamObserver<R>) responseObserver;
+        this.processor = processor;
+        this.errorResult = errorResult;
+        this.orderingKey = orderingKey;
+        this.executor = executor;
+
+        responses.disableAutoRequest();
+        responses.setOnReadyHandler(this::drain);
+        responses.setOnCancelHandler(this::onCancelled);
+        responses.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(T request) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            outstanding++;
+            if (orderingKey != null) {
+                schedule(orderingKey.apply(request), request);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            executor.execute(() -> complete(process(request)));
+        } catch (RejectedExecutionException e) {
+            complete(busy(request));
+        }
+    }
+
+    // Called with the lock held
+    private void schedule(Object key, T request) {
+        CompletableFuture<Void> previous = tails.getOrDefault(key, CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> next = previous
+            .thenRunAsync(() -> complete(process(request)), executor)
+            .exceptionally(e -> {
+                // The executor refused the task; process() itself never throws
+                complete(busy(request));
+                return null;
+            });
+        tails.put(key, next);
+        next.whenComplete((ignored, error) -> {
+            lock.lock();
+            try {
+                tails.remove(key, next);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private R process(T request) {
+        try {
+            return processor.apply(request);
+        } catch (Exception e) {
+            // Every accepted request must produce a result, or the stream would never complete
+            log.error("gRPC: Unexpected error processing streamed {}", name, e);
+            return errorResult.create(request, "INTERNAL_ERROR", "An unexpected error occurred");
+        }
+    }
+
+    private R busy(T request) {
+        return errorResult.create(request, "SERVER_BUSY", "Request could not be scheduled, retry later");
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("gRPC: {} stream aborted by client: {}", name, t.getMessage());
+        onCancelled();
+    }
+
+    @Override
+    public void onCompleted() {
+        lock.lock();
+        try {
+            inputCompleted = true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    private void complete(R result) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            ready.add(result);
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    private void drain() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            while (!ready.isEmpty() && responses.isReady()) {
+                responses.onNext(ready.poll());
+                outstanding--;
+                if (!inputCompleted) {
+                    responses.request(1);
+                }
+            }
+            if (inputCompleted && outstanding == 0) {
+                closed = true;
+                responses.onCompleted();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onCancelled() {
+        lock.lock();
+        try {
+            closed = true;
+            ready.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.xiong.payment_gateway.grpc;
+
+import com.xiong.payment_gateway.config.BoundedExecutor;
+import com.xiong.payment_gateway.config.BoundedExecutors;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Pool for the work gRPC streams hand off ({@code StreamPayments}, {@code StreamRefunds},
+ * {@code ListPayments} pages). A streamed payment or refund blocks its thread until the
+ * provider answers, so the pool is sized for two full stream windows of blocked calls and
+ * kept apart from Spring Boot's shared {@code applicationTaskExecutor}. Once the pool and its
+ * queue are full, tasks are rejected and the stream answers {@code SERVER_BUSY}.
+ */
+@Component
+class GrpcStreamExecutor {
+    private static final int THREADS = 128;
+    private static final int MAX_QUEUED_TASKS = 1024;
+
+    private final BoundedExecutor executor;
+
+    GrpcStreamExecutor(BoundedExecutors executors) {
+        this.executor = executors.create("grpc-stream-", THREADS, MAX_QUEUED_TASKS);
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package com.xiong.payment_gateway.grpc;
+
+import com.xiong.payment_gateway.dto.MerchantVolumeReport;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.service.MerchantVolumeService;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.http.HttpStatus;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+@GrpcService
+@Slf4j
+public class MerchantGrpcService extends MerchantServiceGrpc.MerchantServiceImplBase {
+    
+    private final MerchantVolumeService volumeService;
+    private final GatewayMetrics metrics;
+    
+    public MerchantGrpcService(MerchantVolumeService volumeService, GatewayMetrics metrics) {
+        this.volumeService = volumeService;
+        this.metrics = metrics;
+    }
+    
+    @Override
+    public void getMerchantVolume(
+            GetMerchantVolumeRequest request,
+            StreamObserver<com.xiong.payment_gateway.grpc.MerchantVolumeReport> responseObserver) {
+        try {
+            log.info("gRPC: Fetching volume of merchant: {}", request.getMerchantId());
+            
+            LocalDate from = request.getFrom().isEmpty() ? LocalDate.now() : parseDate(request.getFrom());
+            LocalDate to = request.getTo().isEmpty() ? from : parseDate(request.getTo());
+            MerchantVolumeReport report = volumeService.getVolume(request.getMerchantId(), from, to);
+            
+            com.xiong.payment_gateway.grpc.MerchantVolumeReport.Builder response =
+                    com.xiong.payment_gateway.grpc.MerchantVolumeReport.newBuilder()
+                            .setMerchantId(report.getMerchantId())
+                            .setFrom(report.getFrom().toString())
+                            .setTo(report.getTo().toString());
+            report.getTotals().forEach(volume -> response.addTotals(toProtoVolume(volume)));
+            report.getDaily().forEach(volume -> response.addDaily(toProtoVolume(volume)));
+            
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+            
+        } catch (Exception e) {
+            log.error("Error fetching merchant volume via gRPC", e);
+            metrics.recordError("grpc", e);
+            responseObserver.onError(e);
+        }
+    }
+    
+    private static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new PaymentGatewayException(
+                    "Dates must be ISO dates (yyyy-MM-dd): " + date, HttpStatus.BAD_REQUEST, "INVALID_QUERY");
+        }
+    }
+    
+    private static com.xiong.payment_gateway.grpc.MerchantVolume toProtoVolume(
+            com.xiong.payment_gateway.dto.MerchantVolume volume) {
+        return com.xiong.payment_gateway.grpc.MerchantVolume.newBuilder()
+                .setCurrency(volume.getCurrency())
+                .setDate(volume.getDate() != null ? volume.getDate().toString() : "")
+                .setPaymentCount(volume.getPaymentCount())
+                .setGrossAmount(volume.getGrossAmount().toPlainString())
+                .setFailedCount(volume.getFailedCount())
+                .setRefundCount(volume.getRefundCount())
+                .setRefundedAmount(volume.getRefundedAmount().toPlainString())
+                .setNetAmount(volume.getNetAmount().toPlainString())
+                .build();
+    }
+}
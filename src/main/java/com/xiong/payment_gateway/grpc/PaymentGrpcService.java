@@ -1,28 +1,74 @@
 package com.xiong.payment_gateway.grpc;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.protobuf.Timestamp;
 import com.xiong.payment_gateway.dto.ApiResponse;
+import com.xiong.payment_gateway.dto.PaymentBatchItemResult;
+import com.xiong.payment_gateway.dto.PaymentBatchResponse;
 import com.xiong.payment_gateway.dto.PaymentRequest;
 import com.xiong.payment_gateway.dto.PaymentResponse;
+import com.xiong.payment_gateway.dto.PaymentStatusEvent;
+import com.xiong.payment_gateway.dto.PaymentSummary;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
 import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.exception.ResourceNotFoundException;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.service.PaymentSearchService;
 import com.xiong.payment_gateway.service.PaymentService;
+import com.xiong.payment_gateway.service.PaymentStatusEventBus;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.http.HttpStatus;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @GrpcService
 @Slf4j
 public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBase {
     
+    // Requests a single StreamPayments call may have read but not yet answered
+    private static final int STREAM_MAX_IN_FLIGHT = 64;
+    private static final long PROTO_CACHE_MAX_ENTRIES = 10_000;
+    // Rows ListPayments reads per database round trip
+    private static final int LIST_PAGE_SIZE = 500;
+    
     private final PaymentService paymentService;
+    private final PaymentSearchService searchService;
+    private final Executor streamExecutor;
+    private final GatewayMetrics metrics;
+    // Stored timestamps are local date-times in the JVM zone, as written by Hibernate
+    private final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+    // Built GetPayment responses by transaction ID; an entry is reused only for the exact
+    // version it was built from, so any update (which bumps the version) invalidates it
+    private final Cache<String, VersionedProto> protoCache = Caffeine.newBuilder()
+            .maximumSize(PROTO_CACHE_MAX_ENTRIES)
+            .build();
     
-    public PaymentGrpcService(PaymentService paymentService) {
+    public PaymentGrpcService(
+            PaymentService paymentService,
+            PaymentSearchService searchService,
+            GrpcStreamExecutor streamExecutor,
+            GatewayMetrics metrics) {
         this.paymentService = paymentService;
+        this.searchService = searchService;
+        this.streamExecutor = streamExecutor.executor();
+        this.metrics = metrics;
     }
     
     @Override
@@ -33,38 +79,177 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
             log.info("gRPC: Processing payment for merchant: {}", request.getMerchantId());
             
             // Convert proto request to DTO
-            PaymentRequest paymentRequest = new PaymentRequest();
-            paymentRequest.setMerchantId(request.getMerchantId());
+            PaymentRequest paymentRequest = toPaymentRequest(request);
             paymentRequest.setAmount(new BigDecimal(request.getAmount()));
-            paymentRequest.setCurrency(request.getCurrency());
-            paymentRequest.setIdempotencyKey(request.getIdempotencyKey());
-            paymentRequest.setCustomerId(request.getCustomerId());
-            paymentRequest.setPaymentMethod(request.getPaymentMethod());
-            paymentRequest.setWebhookUrl(request.getWebhookUrl());
-            
-            // Convert metadata map
-            Map<String, Object> metadata = new HashMap<>(request.getMetadataMap());
-            paymentRequest.setMetadata(metadata);
             
             // Process payment using existing service
             ApiResponse<PaymentResponse> apiResponse = paymentService.processPayment(paymentRequest);
-            PaymentResponse paymentResponse = apiResponse.getData();
             
             // Convert DTO to proto response
-            com.xiong.payment_gateway.grpc.PaymentResponse protoResponse = com.xiong.payment_gateway.grpc.PaymentResponse.newBuilder()
-                    .setTransactionId(paymentResponse.getTransactionId())
-                    .setStatus(paymentResponse.getStatus())
-                    .setAmount(paymentResponse.getAmount().toString())
-                    .setCurrency(paymentResponse.getCurrency())
-                    .setCreatedAt(localDateTimeToTimestamp(paymentResponse.getCreatedAt()))
-                    .setMessage(paymentResponse.getMessage() != null ? paymentResponse.getMessage() : "")
-                    .build();
-            
-            responseObserver.onNext(protoResponse);
+            responseObserver.onNext(toProtoResponse(apiResponse.getData()));
             responseObserver.onCompleted();
             
         } catch (Exception e) {
             log.error("Error processing payment via gRPC", e);
+            metrics.recordError("grpc", e);
+            responseObserver.onError(e);
+        }
+    }
+    
+    @Override
+    public void createPaymentsBatch(
+            CreatePaymentsBatchRequest request,
+            StreamObserver<CreatePaymentsBatchResponse> responseObserver) {
+        try {
+            log.info("gRPC: Processing payment batch of {} items", request.getPaymentsCount());
+            
+            // Convert proto requests to DTOs; an unparseable amount is left null so that
+            // the item is rejected on its own by validation instead of failing the batch
+            List<PaymentRequest> paymentRequests = new ArrayList<>(request.getPaymentsCount());
+            for (com.xiong.payment_gateway.grpc.PaymentRequest item : request.getPaymentsList()) {
+                PaymentRequest paymentRequest = toPaymentRequest(item);
+                try {
+                    paymentRequest.setAmount(new BigDecimal(item.getAmount()));
+                } catch (NumberFormatException e) {
+                    paymentRequest.setAmount(null);
+                }
+                paymentRequests.add(paymentRequest);
+            }
+            
+            PaymentBatchResponse batchResponse = paymentService.processPaymentsBatch(paymentRequests);
+            
+            CreatePaymentsBatchResponse.Builder protoResponse = CreatePaymentsBatchResponse.newBuilder()
+                    .setCreated(batchResponse.getCreated())
+                    .setDuplicates(batchResponse.getDuplicates())
+                    .setRejected(batchResponse.getRejected());
+            for (PaymentBatchItemResult result : batchResponse.getResults()) {
+                PaymentBatchResult.Builder protoResult = PaymentBatchResult.newBuilder()
+                        .setIdempotencyKey(result.getIdempotencyKey() != null ? result.getIdempotencyKey() : "")
+                        .setOutcome(result.getOutcome().name())
+                        .setErrorCode(result.getErrorCode() != null ? result.getErrorCode() : "")
+                        .setErrorMessage(result.getErrorMessage() != null ? result.getErrorMessage() : "");
+                if (result.getPayment() != null) {
+                    protoResult.setPayment(toProtoResponse(result.getPayment()));
+                }
+                protoResponse.addResults(protoResult);
+            }
+            
+            responseObserver.onNext(protoResponse.build());
+            responseObserver.onCompleted();
+            
+        } catch (Exception e) {
+            log.error("Error processing payment batch via gRPC", e);
+            metrics.recordError("grpc", e);
+            responseObserver.onError(e);
+        }
+    }
+    
+    @Override
+    public StreamObserver<com.xiong.payment_gateway.grpc.PaymentRequest> streamPayments(
+            StreamObserver<PaymentBatchResult> responseObserver) {
+        log.info("gRPC: Opening payment ingestion stream");
+        return new BatchStreamHandler<>("payment", responseObserver, this::processStreamedPayment,
+                PaymentGrpcService::rejectedStreamedPayment, null, streamExecutor, STREAM_MAX_IN_FLIGHT);
+    }
+    
+    private static PaymentBatchResult rejectedStreamedPayment(
+            com.xiong.payment_gateway.grpc.PaymentRequest request, String errorCode, String message) {
+        return PaymentBatchResult.newBuilder()
+                .setIdempotencyKey(request.getIdempotencyKey())
+                .setOutcome(PaymentBatchItemResult.Outcome.REJECTED.name())
+                .setErrorCode(errorCode)
+                .setErrorMessage(message)
+                .build();
+    }
+    
+    private PaymentBatchResult processStreamedPayment(com.xiong.payment_gateway.grpc.PaymentRequest request) {
+        PaymentBatchResult.Builder result = PaymentBatchResult.newBuilder()
+                .setIdempotencyKey(request.getIdempotencyKey());
+        
+        PaymentRequest paymentRequest = toPaymentRequest(request);
+        try {
+            paymentRequest.setAmount(new BigDecimal(request.getAmount()));
+        } catch (NumberFormatException e) {
+            paymentRequest.setAmount(null);
+        }
+        Optional<String> validationError = paymentService.validationError(paymentRequest);
+        if (validationError.isPresent()) {
+            return result.setOutcome(PaymentBatchItemResult.Outcome.REJECTED.name())
+                    .setErrorCode("VALIDATION_FAILED")
+                    .setErrorMessage(validationError.get())
+                    .build();
+        }
+        
+        try {
+            ApiResponse<PaymentResponse> apiResponse = paymentService.processPayment(paymentRequest);
+            PaymentBatchItemResult.Outcome outcome = apiResponse.isDuplicate()
+                    ? PaymentBatchItemResult.Outcome.DUPLICATE
+                    : PaymentBatchItemResult.Outcome.CREATED;
+            return result.setOutcome(outcome.name())
+                    .setPayment(toProtoResponse(apiResponse.getData()))
+                    .build();
+        } catch (PaymentGatewayException e) {
+            metrics.recordError("grpc", e);
+            return result.setOutcome(PaymentBatchItemResult.Outcome.REJECTED.name())
+                    .setErrorCode(e.getErrorCode())
+                    .setErrorMessage(e.getMessage())
+                    .build();
+        }
+    }
+    
+    @Override
+    public void watchPayment(
+            WatchPaymentRequest request,
+            StreamObserver<com.xiong.payment_gateway.grpc.PaymentStatusEvent> responseObserver) {
+        ServerCallStreamObserver<com.xiong.payment_gateway.grpc.PaymentStatusEvent> observer =
+                (ServerCallStreamObserver<com.xiong.payment_gateway.grpc.PaymentStatusEvent>) responseObserver;
+        
+        // Called one event at a time by the subscription, on the status bus's delivery pool
+        Consumer<PaymentStatusEvent> listener = event -> {
+            if (!observer.isReady()) {
+                // Never buffer without bound for a watcher that has stopped reading
+                observer.onError(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Watcher is not keeping up; resume with GetPayment")
+                        .asRuntimeException());
+                throw new IllegalStateException("Payment watcher is not keeping up");
+            }
+            observer.onNext(toProtoStatusEvent(event));
+            if (event.isTerminal() && request.hasTransactionId()) {
+                observer.onCompleted();
+            }
+        };
+        
+        // Registered before subscribing: events may be sent as soon as the subscription exists
+        AtomicReference<PaymentStatusEventBus.Subscription> subscription = new AtomicReference<>();
+        observer.setOnCancelHandler(() -> {
+            PaymentStatusEventBus.Subscription current = subscription.get();
+            if (current != null) {
+                current.close();
+            }
+        });
+        try {
+            if (request.hasTransactionId()) {
+                log.info("gRPC: Watching transaction: {}", request.getTransactionId());
+                subscription.set(paymentService.watchTransaction(request.getTransactionId(), listener));
+            } else if (request.hasMerchantId()) {
+                log.info("gRPC: Watching merchant: {}", request.getMerchantId());
+                subscription.set(paymentService.watchMerchant(request.getMerchantId(), listener));
+            } else {
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                        .withDescription("transaction_id or merchant_id is required")
+                        .asRuntimeException());
+                return;
+            }
+            // Cancelled while subscribing
+            if (observer.isCancelled()) {
+                subscription.get().close();
+            }
+            
+        } catch (ResourceNotFoundException e) {
+            metrics.recordError("grpc", e);
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error watching payment via gRPC", e);
             responseObserver.onError(e);
         }
     }
@@ -81,25 +266,138 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
                     paymentService.getTransaction(request.getTransactionId());
             
             // Convert model to proto response
-            com.xiong.payment_gateway.grpc.PaymentTransaction protoTransaction = convertToProtoTransaction(transaction);
+            com.xiong.payment_gateway.grpc.PaymentTransaction protoTransaction = toProtoTransaction(transaction);
             
             responseObserver.onNext(protoTransaction);
             responseObserver.onCompleted();
             
         } catch (Exception e) {
             log.error("Error fetching payment via gRPC", e);
+            metrics.recordError("grpc", e);
             responseObserver.onError(e);
         }
     }
     
-    private com.xiong.payment_gateway.grpc.PaymentTransaction convertToProtoTransaction(
+    @Override
+    public void listPayments(
+            ListPaymentsRequest request,
+            StreamObserver<PaymentListItem> responseObserver) {
+        log.info("gRPC: Listing payments of merchant: {}", request.getMerchantId());
+        
+        TransactionStatus status = null;
+        if (!request.getStatus().isEmpty()) {
+            try {
+                status = TransactionStatus.valueOf(request.getStatus());
+            } catch (IllegalArgumentException e) {
+                PaymentGatewayException error = new PaymentGatewayException(
+                        "Unknown status: " + request.getStatus(), HttpStatus.BAD_REQUEST, "INVALID_QUERY");
+                metrics.recordError("grpc", error);
+                responseObserver.onError(error);
+                return;
+            }
+        }
+        TransactionStatus statusFilter = status;
+        LocalDateTime from = request.hasFrom() ? timestampToLocalDateTime(request.getFrom()) : null;
+        LocalDateTime to = request.hasTo() ? timestampToLocalDateTime(request.getTo()) : null;
+        
+        new PaymentListStream(responseObserver,
+                (cursor, pageSize, action) -> searchService.forEachPayment(
+                        request.getMerchantId(), statusFilter, from, to, cursor, pageSize, action),
+                this::toProtoListItem, streamExecutor, metrics, LIST_PAGE_SIZE,
+                request.getCursor().isEmpty() ? null : request.getCursor(), request.getLimit())
+                .start();
+    }
+    
+    // Conversions below are package-private for PaymentConversionBenchmark
+    
+    /**
+     * Copy every field except the amount, which callers parse according to their own error handling.
+     */
+    PaymentRequest toPaymentRequest(com.xiong.payment_gateway.grpc.PaymentRequest request) {
+        PaymentRequest paymentRequest = new PaymentRequest();
+        paymentRequest.setMerchantId(request.getMerchantId());
+        paymentRequest.setCurrency(request.getCurrency());
+        paymentRequest.setIdempotencyKey(request.getIdempotencyKey());
+        paymentRequest.setCustomerId(request.getCustomerId());
+        paymentRequest.setPaymentMethod(request.getPaymentMethod());
+        paymentRequest.setWebhookUrl(request.getWebhookUrl());
+        
+        // Convert metadata map
+        Map<String, Object> metadata = new HashMap<>(request.getMetadataMap());
+        paymentRequest.setMetadata(metadata);
+        return paymentRequest;
+    }
+    
+    com.xiong.payment_gateway.grpc.PaymentResponse toProtoResponse(PaymentResponse paymentResponse) {
+        return com.xiong.payment_gateway.grpc.PaymentResponse.newBuilder()
+                .setTransactionId(paymentResponse.getTransactionId())
+                .setStatus(paymentResponse.getStatus())
+                .setAmount(paymentResponse.getAmount().toString())
+                .setCurrency(paymentResponse.getCurrency())
+                .setCreatedAt(localDateTimeToTimestamp(paymentResponse.getCreatedAt()))
+                .setMessage(paymentResponse.getMessage() != null ? paymentResponse.getMessage() : "")
+                .build();
+    }
+    
+    com.xiong.payment_gateway.grpc.PaymentStatusEvent toProtoStatusEvent(PaymentStatusEvent event) {
+        return com.xiong.payment_gateway.grpc.PaymentStatusEvent.newBuilder()
+                .setTransactionId(event.getTransactionId())
+                .setMerchantId(event.getMerchantId())
+                .setStatus(event.getStatus())
+                .setAmount(event.getAmount().toString())
+                .setRefundedAmount(event.getRefundedAmount() != null ? event.getRefundedAmount().toString() : "0")
+                .setCurrency(event.getCurrency())
+                .setVersion(event.getVersion() != null ? event.getVersion() : 0)
+                .setUpdatedAt(localDateTimeToTimestamp(event.getUpdatedAt()))
+                .setTerminal(event.isTerminal())
+                .build();
+    }
+    
+    PaymentListItem toProtoListItem(PaymentSummary summary) {
+        return PaymentListItem.newBuilder()
+                .setTransactionId(summary.getTransactionId())
+                .setMerchantId(summary.getMerchantId())
+                .setStatus(summary.getStatus().name())
+                .setAmount(summary.getAmount().toString())
+                .setRefundedAmount(summary.getRefundedAmount() != null ? summary.getRefundedAmount().toString() : "0")
+                .setCurrency(summary.getCurrency())
+                .setCustomerId(summary.getCustomerId() != null ? summary.getCustomerId() : "")
+                .setCreatedAt(localDateTimeToTimestamp(summary.getCreatedAt()))
+                .setUpdatedAt(localDateTimeToTimestamp(summary.getUpdatedAt()))
+                .setCursor(PaymentSearchService.cursorOf(summary))
+                .build();
+    }
+    
+    /**
+     * The proto for this version of the transaction, built once and then served from
+     * {@link #protoCache}. Transactions not yet persisted (no version) are always rebuilt.
+     */
+    com.xiong.payment_gateway.grpc.PaymentTransaction toProtoTransaction(
+            com.xiong.payment_gateway.models.PaymentTransaction transaction) {
+        Long version = transaction.getVersion();
+        if (version == null) {
+            return convertToProtoTransaction(transaction);
+        }
+        VersionedProto cached = protoCache.getIfPresent(transaction.getId());
+        if (cached != null && cached.version() == version) {
+            return cached.proto();
+        }
+        com.xiong.payment_gateway.grpc.PaymentTransaction proto = convertToProtoTransaction(transaction);
+        protoCache.put(transaction.getId(), new VersionedProto(version, proto));
+        return proto;
+    }
+    
+    com.xiong.payment_gateway.grpc.PaymentTransaction convertToProtoTransaction(
             com.xiong.payment_gateway.models.PaymentTransaction transaction) {
-        Map<String, String> metadataMap = new HashMap<>();
-        transaction.getMetadata().forEach((key, value) ->
-            metadataMap.put(key, value != null ? value.toString() : "")
-        );
+        com.xiong.payment_gateway.grpc.PaymentTransaction.Builder builder =
+                com.xiong.payment_gateway.grpc.PaymentTransaction.newBuilder();
+        if (transaction.getMetadata() != null) {
+            // Straight into the builder's map, without an intermediate copy
+            transaction.getMetadata().forEach((key, value) ->
+                builder.putMetadata(key, value instanceof String text ? text : value != null ? value.toString() : ""));
+        }
 
-        return com.xiong.payment_gateway.grpc.PaymentTransaction.newBuilder()
+        return builder
                 .setId(transaction.getId())
                 .setMerchantId(transaction.getMerchantId())
                 .setAmount(transaction.getAmount().toString())
@@ -108,21 +406,26 @@ public class PaymentGrpcService extends PaymentServiceGrpc.PaymentServiceImplBas
                 .setIdempotencyKey(transaction.getIdempotencyKey())
                 .setCustomerId(transaction.getCustomerId() != null ? transaction.getCustomerId() : "")
                 .setPaymentMethod(transaction.getPaymentMethod() != null ? transaction.getPaymentMethod() : "")
-                .putAllMetadata(metadataMap)
                 .setCreatedAt(localDateTimeToTimestamp(transaction.getCreatedAt()))
                 .setUpdatedAt(localDateTimeToTimestamp(transaction.getUpdatedAt()))
                 .build();
     }
     
-    private Timestamp localDateTimeToTimestamp(LocalDateTime dateTime) {
+    Timestamp localDateTimeToTimestamp(LocalDateTime dateTime) {
         if (dateTime == null) {
             return Timestamp.getDefaultInstance();
         }
-        long seconds = dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
-        int nanos = dateTime.getNano();
         return Timestamp.newBuilder()
-                .setSeconds(seconds)
-                .setNanos(nanos)
+                .setSeconds(dateTime.toEpochSecond(zoneRules.getOffset(dateTime)))
+                .setNanos(dateTime.getNano())
                 .build();
     }
+    
+    LocalDateTime timestampToLocalDateTime(Timestamp timestamp) {
+        Instant instant = Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
+        return LocalDateTime.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos(), zoneRules.getOffset(instant));
+    }
+    
+    private record VersionedProto(long version, com.xiong.payment_gateway.grpc.PaymentTransaction proto) {
+    }
 }
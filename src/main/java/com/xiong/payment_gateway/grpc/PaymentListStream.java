@@ -0,0 +1,137 @@
+package com.xiong.payment_gateway.grpc;
+
+import com.xiong.payment_gateway.dto.PaymentSummary;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Server side of one {@code ListPayments} call.
+ *
+ * Reads the listing one keyset page at a time, writing every row as it comes off the
+ * database cursor, and reads the next page only while the transport is ready. A slow client
+ * therefore never makes the server buffer more than one page, and no database transaction
+ * stays open while waiting for it.
+ */
+@Slf4j
+final class PaymentListStream {
+    /**
+     * Reads one page starting after {@code cursor} and returns the cursor of the next page,
+     * or null after the last one.
+     */
+    @FunctionalInterface
+    interface PageReader {
+        String read(String cursor, int pageSize, Consumer<PaymentSummary> action);
+    }
+
+    private final ServerCallStreamObserver<PaymentListItem> responses;
+    private final PageReader reader;
+    private final Function<PaymentSummary, PaymentListItem> converter;
+    private final Executor executor;
+    private final GatewayMetrics metrics;
+    private final int pageSize;
+    private final AtomicBoolean pumping = new AtomicBoolean();
+    // Only touched by the pumping thread, which the flag above keeps to one at a time
+    private String cursor;
+    private long remaining;
+    private volatile boolean finished;
+
+    /**
+     * @param limit number of items to send at most, or 0 for every match
+     */
+    PaymentListStream(
+            StreamObserver<PaymentListItem> responseObserver,
+            PageReader reader,
+            Function<PaymentSummary, PaymentListItem> converter,
+            Executor executor,
+            GatewayMetrics metrics,
+            int pageSize,
+            String cursor,
+            int limit) {
+        this.responses = (ServerCallStreamObserver<PaymentListItem>) responseObserver;
+        this.reader = reader;
+        this.converter = converter;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.pageSize = pageSize;
+        this.cursor = cursor;
+        this.remaining = limit > 0 ? limit : Long.MAX_VALUE;
+
+        responses.setOnCancelHandler(() -> finished = true);
+        responses.setOnReadyHandler(this::schedule);
+    }
+
+    void start() {
+        schedule();
+    }
+
+    private void schedule() {
+        if (finished) {
+            return;
+        }
+        try {
+            executor.execute(this::pump);
+        } catch (RejectedExecutionException e) {
+            // A running pump carries on by itself; otherwise nothing would resume the stream.
+            // The client continues from the cursor of the last item it received.
+            if (!pumping.get()) {
+                finish(e);
+            }
+        }
+    }
+
+    private void pump() {
+        while (pumping.compareAndSet(false, true)) {
+            try {
+                while (!finished && responses.isReady()) {
+                    readPage();
+                }
+            } catch (RuntimeException e) {
+                finish(e);
+            } finally {
+                pumping.set(false);
+            }
+            // The transport may have become ready after the last check, and its onReady
+            // skipped while this thread was still pumping
+            if (finished || !responses.isReady()) {
+                return;
+            }
+        }
+    }
+
+    private void readPage() {
+        long[] sent = {0};
+        String next = reader.read(cursor, (int) Math.min(pageSize, remaining), row -> {
+            if (!finished) {
+                responses.onNext(converter.apply(row));
+                sent[0]++;
+            }
+        });
+        remaining -= sent[0];
+        cursor = next;
+        if (next == null || remaining == 0) {
+            finish(null);
+        }
+    }
+
+    private void finish(RuntimeException error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (error == null) {
+            responses.onCompleted();
+        } else {
+            log.error("Error listing payments via gRPC", error);
+            metrics.recordError("grpc", error);
+            responses.onError(error);
+        }
+    }
+}
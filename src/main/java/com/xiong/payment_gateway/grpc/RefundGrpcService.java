@@ -1,7 +1,11 @@
 package com.xiong.payment_gateway.grpc;
 
 import com.google.protobuf.Timestamp;
+import com.xiong.payment_gateway.dto.RefundBatchItemResult;
+import com.xiong.payment_gateway.dto.RefundBatchResponse;
 import com.xiong.payment_gateway.dto.RefundRequest;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
 import com.xiong.payment_gateway.models.Refund;
 import com.xiong.payment_gateway.service.RefundService;
 import io.grpc.stub.StreamObserver;
@@ -10,15 +14,29 @@ import net.devh.boot.grpc.server.service.GrpcService;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
 
 @GrpcService
 @Slf4j
 public class RefundGrpcService extends RefundServiceGrpc.RefundServiceImplBase {
     
+    // Requests a single StreamRefunds call may have read but not yet answered
+    private static final int STREAM_MAX_IN_FLIGHT = 64;
+    
     private final RefundService refundService;
+    private final Executor streamExecutor;
+    private final GatewayMetrics metrics;
     
-    public RefundGrpcService(RefundService refundService) {
+    public RefundGrpcService(
+            RefundService refundService,
+            GrpcStreamExecutor streamExecutor,
+            GatewayMetrics metrics) {
         this.refundService = refundService;
+        this.streamExecutor = streamExecutor.executor();
+        this.metrics = metrics;
     }
     
     @Override
@@ -46,10 +64,115 @@ public class RefundGrpcService extends RefundServiceGrpc.RefundServiceImplBase {
             
         } catch (Exception e) {
             log.error("Error processing refund via gRPC", e);
+            metrics.recordError("grpc", e);
+            responseObserver.onError(e);
+        }
+    }
+    
+    @Override
+    public void createRefundsBatch(
+            CreateRefundsBatchRequest request,
+            StreamObserver<CreateRefundsBatchResponse> responseObserver) {
+        try {
+            log.info("gRPC: Processing refund batch of {} items", request.getRefundsCount());
+            
+            List<RefundRequest> refundRequests = new ArrayList<>(request.getRefundsCount());
+            for (com.xiong.payment_gateway.grpc.RefundRequest item : request.getRefundsList()) {
+                refundRequests.add(toRefundRequest(item));
+            }
+            
+            RefundBatchResponse batchResponse = refundService.processRefundsBatch(refundRequests);
+            
+            CreateRefundsBatchResponse.Builder protoResponse = CreateRefundsBatchResponse.newBuilder()
+                    .setCreated(batchResponse.getCreated())
+                    .setRejected(batchResponse.getRejected());
+            for (int i = 0; i < batchResponse.getResults().size(); i++) {
+                RefundBatchItemResult result = batchResponse.getResults().get(i);
+                // Results are in request order, so the reference defaults to the item's index
+                String reference = request.getRefunds(i).getReference();
+                RefundBatchResult.Builder protoResult = RefundBatchResult.newBuilder()
+                        .setReference(reference.isEmpty() ? Integer.toString(i) : reference)
+                        .setTransactionId(result.getTransactionId() != null ? result.getTransactionId() : "")
+                        .setOutcome(result.getOutcome().name())
+                        .setErrorCode(result.getErrorCode() != null ? result.getErrorCode() : "")
+                        .setErrorMessage(result.getErrorMessage() != null ? result.getErrorMessage() : "");
+                if (result.getRefund() != null) {
+                    protoResult.setRefund(convertToProtoRefund(result.getRefund()));
+                }
+                protoResponse.addResults(protoResult);
+            }
+            
+            responseObserver.onNext(protoResponse.build());
+            responseObserver.onCompleted();
+            
+        } catch (Exception e) {
+            log.error("Error processing refund batch via gRPC", e);
+            metrics.recordError("grpc", e);
             responseObserver.onError(e);
         }
     }
     
+    /**
+     * Refunds of the same transaction are processed one at a time in arrival order, so their
+     * balance checks see each other; refunds of different transactions run in parallel.
+     */
+    @Override
+    public StreamObserver<com.xiong.payment_gateway.grpc.RefundRequest> streamRefunds(
+            StreamObserver<RefundBatchResult> responseObserver) {
+        log.info("gRPC: Opening refund ingestion stream");
+        return new BatchStreamHandler<>("refund", responseObserver, this::processStreamedRefund,
+                RefundGrpcService::rejectedStreamedRefund,
+                com.xiong.payment_gateway.grpc.RefundRequest::getTransactionId,
+                streamExecutor, STREAM_MAX_IN_FLIGHT);
+    }
+    
+    private RefundBatchResult processStreamedRefund(com.xiong.payment_gateway.grpc.RefundRequest request) {
+        RefundRequest refundRequest = toRefundRequest(request);
+        Optional<String> validationError = refundService.validationError(refundRequest);
+        if (validationError.isPresent()) {
+            return rejectedStreamedRefund(request, "VALIDATION_FAILED", validationError.get());
+        }
+        
+        try {
+            Refund refund = refundService.processRefund(refundRequest);
+            return RefundBatchResult.newBuilder()
+                    .setReference(request.getReference())
+                    .setTransactionId(request.getTransactionId())
+                    .setOutcome(RefundBatchItemResult.Outcome.CREATED.name())
+                    .setRefund(convertToProtoRefund(refund))
+                    .build();
+        } catch (PaymentGatewayException e) {
+            metrics.recordError("grpc", e);
+            return rejectedStreamedRefund(request, e.getErrorCode(), e.getMessage());
+        }
+    }
+    
+    private static RefundBatchResult rejectedStreamedRefund(
+            com.xiong.payment_gateway.grpc.RefundRequest request, String errorCode, String message) {
+        return RefundBatchResult.newBuilder()
+                .setReference(request.getReference())
+                .setTransactionId(request.getTransactionId())
+                .setOutcome(RefundBatchItemResult.Outcome.REJECTED.name())
+                .setErrorCode(errorCode)
+                .setErrorMessage(message)
+                .build();
+    }
+    
+    /**
+     * An unparseable amount is left null so that the item is rejected by validation.
+     */
+    private RefundRequest toRefundRequest(com.xiong.payment_gateway.grpc.RefundRequest request) {
+        RefundRequest refundRequest = new RefundRequest();
+        refundRequest.setTransactionId(request.getTransactionId());
+        try {
+            refundRequest.setAmount(new BigDecimal(request.getAmount()));
+        } catch (NumberFormatException e) {
+            refundRequest.setAmount(null);
+        }
+        refundRequest.setReason(request.getReason());
+        return refundRequest;
+    }
+    
     private com.xiong.payment_gateway.grpc.Refund convertToProtoRefund(Refund refund) {
         return com.xiong.payment_gateway.grpc.Refund.newBuilder()
                 .setId(refund.getId())
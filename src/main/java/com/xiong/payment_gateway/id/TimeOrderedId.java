@@ -0,0 +1,25 @@
+package com.xiong.payment_gateway.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity identifier that is assigned from {@link UuidV7Generator} before insert.
+ * Replaces {@code @GeneratedValue(strategy = GenerationType.UUID)}, whose random v4 keys
+ * fragment the primary key index.
+ *
+ * Migration: IDs keep the canonical 36-character UUID string form, so existing v4 rows
+ * stay valid and need no rewrite; new rows simply append in time order. Because every
+ * stored value is a valid UUID, the varchar columns can later be converted in place with
+ * {@code ALTER TABLE ... ALTER COLUMN id TYPE uuid USING id::uuid} (and likewise for the
+ * {@code transaction_id} reference columns) once the Java side switches to {@code UUID}.
+ */
+@IdGeneratorType(TimeOrderedIdentifierGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedId {
+}
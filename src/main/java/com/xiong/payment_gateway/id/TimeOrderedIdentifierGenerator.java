@@ -0,0 +1,28 @@
+package com.xiong.payment_gateway.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+
+/**
+ * Hibernate bridge for {@link TimeOrderedId}. All entities share {@link UuidV7Generator#INSTANCE},
+ * so IDs stay ordered across tables within the process.
+ */
+public class TimeOrderedIdentifierGenerator implements BeforeExecutionGenerator {
+    @Override
+    public Object generate(
+            SharedSessionContractImplementor session,
+            Object owner,
+            Object currentValue,
+            EventType eventType) {
+        return UuidV7Generator.INSTANCE.nextId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
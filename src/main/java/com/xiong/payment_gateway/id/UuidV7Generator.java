@@ -0,0 +1,74 @@
+package com.xiong.payment_gateway.id;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free UUIDv7 (RFC 9562) generator.
+ *
+ * Layout: 48-bit Unix epoch milliseconds, version 7, a 12-bit sequence in {@code rand_a}
+ * and 62 random bits. The timestamp and sequence are advanced together with a single CAS,
+ * so IDs from one process are strictly increasing even within the same millisecond.
+ * The canonical lowercase string form sorts in the same order as the IDs were generated,
+ * which keeps B-tree inserts on the right-hand edge of the index.
+ */
+public final class UuidV7Generator {
+    public static final UuidV7Generator INSTANCE = new UuidV7Generator(System::currentTimeMillis);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int SEQUENCE_BITS = 12;
+
+    private final LongSupplier clock;
+    // (epoch millis << SEQUENCE_BITS) | sequence of the last issued ID
+    private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+    // Package-private so tests can drive the clock
+    UuidV7Generator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public String nextId() {
+        long timeAndSequence = nextTimeAndSequence();
+        long millis = timeAndSequence >>> SEQUENCE_BITS;
+        long sequence = timeAndSequence & ((1L << SEQUENCE_BITS) - 1);
+
+        long msb = (millis << 16) | 0x7000L | sequence;
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return format(msb, lsb);
+    }
+
+    private long nextTimeAndSequence() {
+        long candidate = clock.getAsLong() << SEQUENCE_BITS;
+        while (true) {
+            long last = lastTimeAndSequence.get();
+            // If the clock has not moved on (or went backwards), keep counting from the last ID;
+            // a sequence overflow simply borrows the next millisecond.
+            long next = candidate > last ? candidate : last + 1;
+            if (lastTimeAndSequence.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static String format(long msb, long lsb) {
+        char[] out = new char[36];
+        writeHex(out, 0, msb >>> 32, 8);
+        out[8] = '-';
+        writeHex(out, 9, msb >>> 16, 4);
+        out[13] = '-';
+        writeHex(out, 14, msb, 4);
+        out[18] = '-';
+        writeHex(out, 19, lsb >>> 48, 4);
+        out[23] = '-';
+        writeHex(out, 24, lsb, 12);
+        return new String(out);
+    }
+
+    private static void writeHex(char[] out, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.xiong.payment_gateway.metrics;
+
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.models.TransactionStatus;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Instrumentation of the payment lifecycle.
+ *
+ * Each {@link Stage} is an observation named {@code payment.stage}, tagged with its flow and
+ * stage: it is recorded as a timer (with the fixed histogram buckets configured under
+ * {@code management.metrics.distribution.slo}) and becomes a span once a tracing bridge is on
+ * the classpath. The counters are plain Micrometer counters. Everything is exported on
+ * {@code /actuator/prometheus}.
+ */
+@Component
+public class GatewayMetrics {
+    public static final String STAGE_OBSERVATION = "payment.stage";
+
+    public enum Stage {
+        PAYMENT_IDEMPOTENCY_CHECK("payment", "idempotency_check"),
+        PAYMENT_DB_INSERT("payment", "db_insert"),
+        PAYMENT_PROVIDER_CALL("payment", "provider_call"),
+        PAYMENT_DB_UPDATE("payment", "db_update"),
+        REFUND_DB_INSERT("refund", "db_insert"),
+        REFUND_PROVIDER_CALL("refund", "provider_call"),
+        REFUND_DB_UPDATE("refund", "db_update"),
+        WEBHOOK_ENQUEUE("webhook", "enqueue"),
+        WEBHOOK_DELIVERY("webhook", "delivery");
+
+        private final String spanName;
+        private final KeyValues keyValues;
+
+        Stage(String flow, String stage) {
+            this.spanName = flow + " " + stage;
+            this.keyValues = KeyValues.of("flow", flow, "stage", stage);
+        }
+    }
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Counter duplicates;
+    private final Map<TransactionStatus, Counter> paymentOutcomes = new EnumMap<>(TransactionStatus.class);
+    // By transport, then error code: looking a counter up in the registry builds its ID on every call
+    private final Map<String, Map<String, Counter>> errorCounters = new ConcurrentHashMap<>();
+
+    public GatewayMetrics(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        this.duplicates = Counter.builder("payment.duplicates")
+            .description("Payment requests answered with an existing transaction")
+            .register(meterRegistry);
+        for (TransactionStatus status : new TransactionStatus[] {TransactionStatus.SUCCESS, TransactionStatus.FAILED}) {
+            paymentOutcomes.put(status, Counter.builder("payment.outcomes")
+                .tag("status", status.name())
+                .register(meterRegistry));
+        }
+    }
+
+    public <T> T observe(Stage stage, Supplier<T> work) {
+        return observation(stage).observe(work);
+    }
+
+    /**
+     * For stages that finish on another thread: the caller starts the observation and
+     * stops it once the work completes.
+     */
+    public Observation observation(Stage stage) {
+        return Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+            .contextualName(stage.spanName)
+            .lowCardinalityKeyValues(stage.keyValues);
+    }
+
+    public void recordDuplicates(int count) {
+        if (count > 0) {
+            duplicates.increment(count);
+        }
+    }
+
+    public void recordPaymentOutcome(TransactionStatus status) {
+        Counter counter = paymentOutcomes.get(status);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Count an error returned to a client by its {@link PaymentGatewayException} error code;
+     * any other exception is left to the transport's own metrics.
+     *
+     * @param transport {@code rest} or {@code grpc}
+     */
+    public void recordError(String transport, Throwable error) {
+        if (error instanceof PaymentGatewayException gatewayError) {
+            errorCounters.computeIfAbsent(transport, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(gatewayError.getErrorCode(), code ->
+                    meterRegistry.counter("payment.errors", "transport", transport, "code", code))
+                .increment();
+        }
+    }
+
+    /**
+     * @param outcome {@code delivered}, {@code failed}, or {@code unavailable} when the circuit
+     *                breaker or bulkhead kept the endpoint from being called
+     */
+    public void recordWebhookAttempt(String outcome) {
+        meterRegistry.counter("webhook.attempts", "outcome", outcome).increment();
+    }
+
+    /**
+     * @param reason the error code the refund was rejected with, or the provider's verdict
+     */
+    public void recordRefundRejection(String reason) {
+        meterRegistry.counter("refund.rejections", "reason", reason).increment();
+    }
+}
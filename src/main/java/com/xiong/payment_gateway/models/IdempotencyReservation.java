@@ -0,0 +1,21 @@
+package com.xiong.payment_gateway.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * An idempotency key held by an in-flight payment while Redis is unavailable. Only pending
+ * keys live here: once the payment row is committed, its unique {@code idempotencyKey}
+ * records the outcome and the reservation is deleted.
+ */
+@Entity
+@Table(name = "idempotency_reservations")
+@Data
+public class IdempotencyReservation {
+    @Id
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
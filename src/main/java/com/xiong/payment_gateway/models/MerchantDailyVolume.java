@@ -0,0 +1,63 @@
+package com.xiong.payment_gateway.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of one merchant's payments and refunds in one currency on one day, the day
+ * each payment or refund was finalized. Maintained incrementally by MerchantVolumeService.
+ */
+@Entity
+@Table(
+    name = "merchant_daily_volumes",
+    indexes = @Index(name = "idx_merchant_daily_volumes_merchant_date", columnList = "merchantId, volumeDate")
+)
+@IdClass(MerchantDailyVolume.Key.class)
+@Data
+public class MerchantDailyVolume {
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String merchantId;
+        private String currency;
+        private LocalDate volumeDate;
+    }
+
+    @Id
+    private String merchantId;
+
+    @Id
+    @Column(length = 3)
+    private String currency;
+
+    @Id
+    private LocalDate volumeDate;
+
+    // Successful payments
+    @Column(nullable = false)
+    private long paymentCount;
+
+    @Column(nullable = false)
+    private BigDecimal grossAmount;
+
+    @Column(nullable = false)
+    private long failedCount;
+
+    // Completed refunds
+    @Column(nullable = false)
+    private long refundCount;
+
+    @Column(nullable = false)
+    private BigDecimal refundedAmount;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,7 +1,9 @@
 package com.xiong.payment_gateway.models;
 
+import com.xiong.payment_gateway.id.TimeOrderedId;
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import lombok.Data;
@@ -10,11 +12,22 @@ import java.time.LocalDateTime;
 import java.util.Map;
 
 @Entity
-@Table(name = "payment_transactions")
+@Table(
+    name = "payment_transactions",
+    indexes = {
+        // Lets the reconciler find payments left PROCESSING without scanning the table
+        @Index(name = "idx_payment_transactions_status_updated_at", columnList = "status, updatedAt"),
+        // Keyset pagination of merchant listings, with and without a status filter: both
+        // end in the (createdAt, id) sort key so pages are read as index range scans
+        @Index(name = "idx_payment_transactions_merchant_created_id", columnList = "merchantId, createdAt, id"),
+        @Index(name = "idx_payment_transactions_merchant_status_created_id",
+            columnList = "merchantId, status, createdAt, id")
+    }
+)
 @Data
 public class PaymentTransaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @Column(nullable = false)
@@ -23,6 +36,17 @@ public class PaymentTransaction {
     @Column(nullable = false)
     private BigDecimal amount;
 
+    // Running total of completed refunds, maintained by PaymentRepository.completeRefund
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private BigDecimal refundedAmount = BigDecimal.ZERO;
+
+    // Held by refunds still waiting for the provider; counts against the refundable balance
+    // but leaves the status alone until each refund is finalized
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private BigDecimal pendingRefundAmount = BigDecimal.ZERO;
+
     @Column(nullable = false, length = 3)
     private String currency;
 
@@ -37,10 +61,21 @@ public class PaymentTransaction {
 
     private String paymentMethod;
 
+    // Kept so the payment.completed webhook can be enqueued when the payment is finalized
+    @Column(length = 2048)
+    private String webhookUrl;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> metadata;
 
+    // Bumped on every status change, including the bulk refund UPDATEs. Left null until
+    // persisted so Spring Data still treats new entities as new (persist, not merge).
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
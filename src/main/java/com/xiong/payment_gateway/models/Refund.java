@@ -1,16 +1,24 @@
 package com.xiong.payment_gateway.models;
 
+import com.xiong.payment_gateway.id.TimeOrderedId;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "refunds")
+@Table(
+    name = "refunds",
+    indexes = {
+        @Index(name = "idx_refunds_status_updated_at", columnList = "status, updatedAt"),
+        // Settlement exports read refunds by creation window
+        @Index(name = "idx_refunds_created_at", columnList = "createdAt")
+    }
+)
 @Data
 public class Refund {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @Column(nullable = false)
@@ -27,8 +35,16 @@ public class Refund {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    private LocalDateTime updatedAt;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
     }
 }
\ No newline at end of file
@@ -1,15 +1,18 @@
 package com.xiong.payment_gateway.models;
 
+import com.xiong.payment_gateway.id.TimeOrderedId;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
+// Partitioned by month, and indexed with partial indexes JPA cannot declare, by
+// WebhookPartitionMaintainer
 @Table(name = "webhook_events")
 @Data
 public class WebhookEvent {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     private String id;
 
     @Column(nullable = false)
@@ -0,0 +1,22 @@
+package com.xiong.payment_gateway.provider;
+
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+
+/**
+ * Integration with the acquirer that actually moves the money.
+ *
+ * Calls may block for as long as the acquirer takes to answer. They are always made outside
+ * any database transaction, on {@link PaymentProviderClient}'s dedicated pool. A call that
+ * throws (typically {@link ProviderException}) leaves the payment or refund pending, and it
+ * is submitted again later by the reconciler, so implementations must be idempotent on the
+ * transaction and refund IDs.
+ *
+ * The implementation is chosen with {@code payment.provider.type}; the built-in
+ * {@link SimulatedPaymentProvider} is the default.
+ */
+public interface PaymentProvider {
+    ProviderResult authorize(PaymentTransaction transaction);
+
+    ProviderResult refund(Refund refund, PaymentTransaction transaction);
+}
@@ -0,0 +1,74 @@
+package com.xiong.payment_gateway.provider;
+
+import com.xiong.payment_gateway.config.BoundedExecutor;
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link PaymentProvider} calls on a dedicated, bounded pool so that a slow acquirer
+ * ties up only these threads, never request threads holding database connections. Once the
+ * pool and its queue are full, calls fail immediately with {@link RejectedExecutionException};
+ * the provider has then not been contacted. A call not answered within
+ * {@code payment.provider.call-timeout} completes with a {@link TimeoutException}: its outcome
+ * is unknown, so the payment or refund stays pending. The pool thread is not interrupted.
+ */
+@Component
+@Slf4j
+public class PaymentProviderClient {
+    private final PaymentProvider provider;
+    private final BoundedExecutor executor;
+    private final GatewayMetrics metrics;
+    private final Duration callTimeout;
+
+    public PaymentProviderClient(
+        PaymentProvider provider,
+        PaymentProviderProperties properties,
+        BoundedExecutors executors,
+        GatewayMetrics metrics
+    ) {
+        this.provider = provider;
+        this.metrics = metrics;
+        this.callTimeout = properties.getCallTimeout();
+        // Sized by payment.provider.max-concurrent-calls / max-queued-calls
+        this.executor = executors.create("provider-", properties.getMaxConcurrentCalls(), properties.getMaxQueuedCalls());
+    }
+
+    public CompletableFuture<ProviderResult> authorize(PaymentTransaction transaction) {
+        return submit(GatewayMetrics.Stage.PAYMENT_PROVIDER_CALL, () -> provider.authorize(transaction));
+    }
+
+    public CompletableFuture<ProviderResult> refund(Refund refund, PaymentTransaction transaction) {
+        return submit(GatewayMetrics.Stage.REFUND_PROVIDER_CALL, () -> provider.refund(refund, transaction));
+    }
+
+    private CompletableFuture<ProviderResult> submit(GatewayMetrics.Stage stage, Supplier<ProviderResult> call) {
+        try {
+            // Timed on the pool thread, so the stage excludes time spent queued
+            return CompletableFuture.supplyAsync(() -> metrics.observe(stage, call), executor)
+                .orTimeout(callTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Payment provider pool saturated ({} in flight, {} queued)",
+                executor.activeCount(), executor.queuedCount());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,71 @@
+package com.xiong.payment_gateway.provider;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * {@code payment.provider.*} settings: which {@link PaymentProvider} to use, how many calls
+ * may run against it at once, and the behaviour of the built-in simulated provider.
+ */
+@Data
+@ConfigurationProperties(prefix = "payment.provider")
+public class PaymentProviderProperties {
+    /**
+     * Selects the provider bean; implementations register with
+     * {@code @ConditionalOnProperty(name = "payment.provider.type", havingValue = "...")}.
+     */
+    private String type = "simulated";
+
+    private int maxConcurrentCalls = 64;
+
+    private int maxQueuedCalls = 1000;
+
+    // Longest wait for one answer, queueing included. The outcome is then unknown and the
+    // payment or refund stays pending for the reconciler, so this must stay below its 2 minutes.
+    private Duration callTimeout = Duration.ofSeconds(60);
+
+    private Simulated simulated = new Simulated();
+
+    @Data
+    public static class Simulated {
+        // Fixes every random draw, per idempotency key or refund; unset for a fresh draw each time
+        private Long seed;
+
+        private Latency latency = new Latency();
+
+        private double authorizeDeclineRate = 0.10;
+
+        private double refundDeclineRate = 0.05;
+
+        // Calls that fail at once with an unknown outcome
+        private double errorRate = 0.0;
+
+        // Calls that hang for {@code timeout} and then fail with an unknown outcome
+        private double timeoutRate = 0.0;
+
+        private Duration timeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Latency {
+        private Distribution distribution = Distribution.FIXED;
+
+        // FIXED: the latency; NORMAL: its mean; LONG_TAIL: its median
+        private Duration mean = Duration.ZERO;
+
+        // NORMAL only
+        private Duration stddev = Duration.ZERO;
+
+        // LONG_TAIL only: log-normal shape; p99 is about mean * e^(2.33 * sigma)
+        private double sigma = 1.0;
+
+        // Upper bound applied to every draw
+        private Duration max = Duration.ofSeconds(30);
+    }
+
+    public enum Distribution {
+        FIXED, NORMAL, LONG_TAIL
+    }
+}
@@ -0,0 +1,15 @@
+package com.xiong.payment_gateway.provider;
+
+/**
+ * The provider call failed without a definitive answer (timeout, connection error, 5xx),
+ * so the payment or refund may or may not have gone through.
+ */
+public class ProviderException extends RuntimeException {
+    public ProviderException(String message) {
+        super(message);
+    }
+
+    public ProviderException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
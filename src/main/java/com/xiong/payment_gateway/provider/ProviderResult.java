@@ -0,0 +1,15 @@
+package com.xiong.payment_gateway.provider;
+
+/**
+ * Definitive answer from the acquirer. Unknown outcomes (timeouts, connection errors)
+ * are reported by throwing instead.
+ */
+public record ProviderResult(boolean approved, String declineReason) {
+    public static ProviderResult approve() {
+        return new ProviderResult(true, null);
+    }
+
+    public static ProviderResult decline(String reason) {
+        return new ProviderResult(false, reason);
+    }
+}
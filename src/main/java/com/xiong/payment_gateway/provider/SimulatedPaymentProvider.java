@@ -0,0 +1,100 @@
+package com.xiong.payment_gateway.provider;
+
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Local stand-in for an acquirer, for development, load tests and capacity planning.
+ * Each call sleeps for a latency drawn from the configured distribution and then
+ * approves, declines, fails or times out at the configured rates.
+ *
+ * With {@code payment.provider.simulated.seed} set, every draw is derived from the seed and
+ * what the client sent: a payment's idempotency key, or a refund's payment key, amount and
+ * reason. Generated IDs differ on every run, so they are not used. A replayed workload then
+ * sees the same latencies and outcomes regardless of thread scheduling.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.provider.type", havingValue = "simulated", matchIfMissing = true)
+@Slf4j
+public class SimulatedPaymentProvider implements PaymentProvider {
+    private final PaymentProviderProperties.Simulated settings;
+
+    public SimulatedPaymentProvider(PaymentProviderProperties properties) {
+        this.settings = properties.getSimulated();
+        PaymentProviderProperties.Latency latency = settings.getLatency();
+        log.info("Using simulated payment provider: {} latency (mean {}), decline {}/{}, error {}, timeout {}",
+            latency.getDistribution(), latency.getMean(), settings.getAuthorizeDeclineRate(),
+            settings.getRefundDeclineRate(), settings.getErrorRate(), settings.getTimeoutRate());
+    }
+
+    @Override
+    public ProviderResult authorize(PaymentTransaction transaction) {
+        return call(randomFor(transaction.getIdempotencyKey()),
+            settings.getAuthorizeDeclineRate(), "Declined by issuer");
+    }
+
+    @Override
+    public ProviderResult refund(Refund refund, PaymentTransaction transaction) {
+        String amount = refund.getAmount() != null ? refund.getAmount().stripTrailingZeros().toPlainString() : null;
+        return call(randomFor(transaction.getIdempotencyKey(), amount, refund.getReason()),
+            settings.getRefundDeclineRate(), "Refund rejected by acquirer");
+    }
+
+    private ProviderResult call(RandomGenerator random, double declineRate, String declineReason) {
+        // Draw the outcome before the latency so both stay fixed for a seeded call
+        double outcome = random.nextDouble();
+        if (outcome < settings.getTimeoutRate()) {
+            sleep(settings.getTimeout());
+            throw new ProviderException("Simulated provider timed out after " + settings.getTimeout());
+        }
+        sleep(latency(random));
+        outcome -= settings.getTimeoutRate();
+        if (outcome < settings.getErrorRate()) {
+            throw new ProviderException("Simulated provider error");
+        }
+        outcome -= settings.getErrorRate();
+        return outcome < declineRate ? ProviderResult.decline(declineReason) : ProviderResult.approve();
+    }
+
+    private RandomGenerator randomFor(String... request) {
+        if (settings.getSeed() == null) {
+            return ThreadLocalRandom.current();
+        }
+        // String.hashCode is specified, so the stream is the same in every JVM
+        return new SplittableRandom(settings.getSeed() * 31 + Arrays.hashCode(request));
+    }
+
+    private Duration latency(RandomGenerator random) {
+        PaymentProviderProperties.Latency latency = settings.getLatency();
+        double meanMillis = latency.getMean().toNanos() / 1e6;
+        double millis = switch (latency.getDistribution()) {
+            case FIXED -> meanMillis;
+            case NORMAL -> meanMillis + random.nextGaussian() * (latency.getStddev().toNanos() / 1e6);
+            case LONG_TAIL -> meanMillis * Math.exp(latency.getSigma() * random.nextGaussian());
+        };
+        double capped = Math.min(Math.max(millis, 0), latency.getMax().toMillis());
+        return Duration.ofNanos((long) (capped * 1e6));
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis(), duration.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProviderException("Interrupted while waiting for simulated provider", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.xiong.payment_gateway.repository;
+
+import com.xiong.payment_gateway.models.IdempotencyReservation;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Statements run in their own transaction: reservations are taken before a payment's
+ * transaction starts and dropped from its after-completion callback.
+ */
+@Repository
+public interface IdempotencyReservationRepository extends JpaRepository<IdempotencyReservation, String> {
+
+    /**
+     * @return 1 if the key was free and is now reserved, 0 if another request holds it
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = """
+        INSERT INTO idempotency_reservations (idempotency_key, created_at)
+        VALUES (:key, :now)
+        ON CONFLICT DO NOTHING
+        """, nativeQuery = true)
+    int insertIfAbsent(@Param("key") String idempotencyKey, @Param("now") LocalDateTime now);
+
+    /**
+     * Take over a reservation made before {@code cutoff}, left behind by a node that died
+     * before completing or releasing it.
+     *
+     * @return 1 if this caller now holds the key
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("""
+        UPDATE IdempotencyReservation r
+        SET r.createdAt = :now
+        WHERE r.idempotencyKey = :key
+          AND r.createdAt < :cutoff
+        """)
+    int claimStale(
+        @Param("key") String idempotencyKey,
+        @Param("cutoff") LocalDateTime cutoff,
+        @Param("now") LocalDateTime now
+    );
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("DELETE FROM IdempotencyReservation r WHERE r.idempotencyKey IN :keys")
+    int deleteByKeys(@Param("keys") Collection<String> idempotencyKeys);
+}
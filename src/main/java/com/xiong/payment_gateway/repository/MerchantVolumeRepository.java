@@ -0,0 +1,22 @@
+package com.xiong.payment_gateway.repository;
+
+import com.xiong.payment_gateway.models.MerchantDailyVolume;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Reads of the merchant volume aggregates; they are written in batches by MerchantVolumeService.
+ */
+@Repository
+public interface MerchantVolumeRepository extends JpaRepository<MerchantDailyVolume, MerchantDailyVolume.Key> {
+    /**
+     * @param from inclusive
+     * @param to   inclusive
+     */
+    List<MerchantDailyVolume> findByMerchantIdAndVolumeDateBetweenOrderByVolumeDateAscCurrencyAsc(
+        String merchantId, LocalDate from, LocalDate to);
+}
@@ -1,11 +1,192 @@
 package com.xiong.payment_gateway.repository;
 
+import com.xiong.payment_gateway.dto.PaymentSummary;
+import com.xiong.payment_gateway.dto.SettlementRow;
 import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+/**
+ * Updates join the caller's transaction, or run in their own when called outside one,
+ * e.g. by the reconciler.
+ */
 @Repository
 public interface PaymentRepository extends JpaRepository<PaymentTransaction, String> {
     Optional<PaymentTransaction> findByIdempotencyKey(String idempotencyKey);
-}
\ No newline at end of file
+
+    @Query("SELECT t.id FROM PaymentTransaction t WHERE t.idempotencyKey = :idempotencyKey")
+    Optional<String> findIdByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    /**
+     * Hold {@code amount} for a refund if the transaction is refundable and the balance left
+     * after completed and pending refunds covers it. Check and increment happen in one
+     * statement under the row lock. The status is left alone until {@link #completeRefund}.
+     *
+     * @return 1 if the refund was reserved, 0 if the transaction is missing, not refundable
+     *         or has insufficient balance
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("""
+        UPDATE PaymentTransaction t
+        SET t.pendingRefundAmount = t.pendingRefundAmount + :amount,
+            t.updatedAt = :now,
+            t.version = t.version + 1
+        WHERE t.id = :id
+          AND t.status IN (com.xiong.payment_gateway.models.TransactionStatus.SUCCESS,
+                           com.xiong.payment_gateway.models.TransactionStatus.PARTIAL_REFUND)
+          AND t.refundedAmount + t.pendingRefundAmount + :amount <= t.amount
+        """)
+    int reserveRefund(@Param("id") String id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Turn a reservation made by {@link #reserveRefund} into a completed refund, moving the
+     * status to PARTIAL_REFUND or REFUNDED.
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("""
+        UPDATE PaymentTransaction t
+        SET t.pendingRefundAmount = t.pendingRefundAmount - :amount,
+            t.refundedAmount = t.refundedAmount + :amount,
+            t.status = CASE WHEN t.refundedAmount + :amount >= t.amount
+                THEN com.xiong.payment_gateway.models.TransactionStatus.REFUNDED
+                ELSE com.xiong.payment_gateway.models.TransactionStatus.PARTIAL_REFUND END,
+            t.updatedAt = :now,
+            t.version = t.version + 1
+        WHERE t.id = :id
+        """)
+    int completeRefund(@Param("id") String id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Load and row-lock transactions for a refund batch or for finalizing payments. Rows are
+     * locked in ID order so that concurrent batches touching the same transactions cannot
+     * deadlock. Must run inside a transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM PaymentTransaction t WHERE t.id IN :ids ORDER BY t.id")
+    List<PaymentTransaction> findAllByIdForUpdate(@Param("ids") Collection<String> ids);
+
+    /**
+     * Give back a reservation made by {@link #reserveRefund} when the provider rejected the refund.
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("""
+        UPDATE PaymentTransaction t
+        SET t.pendingRefundAmount = t.pendingRefundAmount - :amount,
+            t.updatedAt = :now,
+            t.version = t.version + 1
+        WHERE t.id = :id
+        """)
+    int releaseRefund(@Param("id") String id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    List<PaymentTransaction> findTop100ByStatusAndUpdatedAtBeforeOrderByUpdatedAt(
+        TransactionStatus status, LocalDateTime cutoff);
+
+    /**
+     * Take over a payment that has been PROCESSING since before {@code cutoff}. Touching
+     * {@code updatedAt} hides it from other reconcilers for another grace period.
+     *
+     * @return 1 if this caller now owns the payment
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("""
+        UPDATE PaymentTransaction t
+        SET t.updatedAt = :now,
+            t.version = t.version + 1
+        WHERE t.id = :id
+          AND t.status = com.xiong.payment_gateway.models.TransactionStatus.PROCESSING
+          AND t.updatedAt < :cutoff
+        """)
+    int claimStaleProcessing(
+        @Param("id") String id,
+        @Param("cutoff") LocalDateTime cutoff,
+        @Param("now") LocalDateTime now
+    );
+
+    /**
+     * Keyset page of a merchant's transactions created before {@code to}, in (createdAt, id)
+     * order, starting strictly after the row (afterCreatedAt, afterId). Rows are streamed from
+     * the JDBC cursor as projections; the stream must be consumed and closed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"))
+    @Query("""
+        SELECT new com.xiong.payment_gateway.dto.PaymentSummary(t.id, t.merchantId, t.status, t.amount,
+            t.refundedAmount, t.currency, t.customerId, t.createdAt, t.updatedAt)
+        FROM PaymentTransaction t
+        WHERE t.merchantId = :merchantId
+          AND t.createdAt >= :afterCreatedAt
+          AND (t.createdAt > :afterCreatedAt OR t.id > :afterId)
+          AND t.createdAt < :to
+        ORDER BY t.createdAt, t.id
+        """)
+    Stream<PaymentSummary> streamByMerchant(
+        @Param("merchantId") String merchantId,
+        @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+        @Param("afterId") String afterId,
+        @Param("to") LocalDateTime to,
+        Limit limit);
+
+    /**
+     * {@link #streamByMerchant} restricted to one status; a separate query so that each
+     * variant matches its own index instead of an optional {@code :status IS NULL} filter.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"))
+    @Query("""
+        SELECT new com.xiong.payment_gateway.dto.PaymentSummary(t.id, t.merchantId, t.status, t.amount,
+            t.refundedAmount, t.currency, t.customerId, t.createdAt, t.updatedAt)
+        FROM PaymentTransaction t
+        WHERE t.merchantId = :merchantId
+          AND t.status = :status
+          AND t.createdAt >= :afterCreatedAt
+          AND (t.createdAt > :afterCreatedAt OR t.id > :afterId)
+          AND t.createdAt < :to
+        ORDER BY t.createdAt, t.id
+        """)
+    Stream<PaymentSummary> streamByMerchantAndStatus(
+        @Param("merchantId") String merchantId,
+        @Param("status") TransactionStatus status,
+        @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+        @Param("afterId") String afterId,
+        @Param("to") LocalDateTime to,
+        Limit limit);
+
+    /**
+     * Settlement lines for a merchant's payments created in [from, to), in (createdAt, id)
+     * order, streamed from the JDBC cursor. Must be consumed and closed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+        SELECT new com.xiong.payment_gateway.dto.SettlementRow('PAYMENT', t.id, t.id, t.merchantId,
+            cast(t.status as String), t.amount, t.currency, t.createdAt, t.updatedAt)
+        FROM PaymentTransaction t
+        WHERE t.merchantId = :merchantId
+          AND t.createdAt >= :from
+          AND t.createdAt < :to
+        ORDER BY t.createdAt, t.id
+        """)
+    Stream<SettlementRow> streamSettlementRows(
+        @Param("merchantId") String merchantId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to);
+}
@@ -1,11 +1,90 @@
 package com.xiong.payment_gateway.repository;
 
+import com.xiong.payment_gateway.dto.SettlementRow;
 import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.RefundStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * Updates join the caller's transaction, or run in their own when called outside one,
+ * e.g. by the reconciler.
+ */
 @Repository
 public interface RefundRepository extends JpaRepository<Refund, String> {
     List<Refund> findByTransactionId(String transactionId);
+
+    /**
+     * Move a PENDING refund to its final status once the provider has answered.
+     *
+     * @return 1 if the refund was moved, 0 if it was already finalized elsewhere
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("""
+        UPDATE Refund r
+        SET r.status = :status,
+            r.updatedAt = :now
+        WHERE r.id = :id
+          AND r.status = com.xiong.payment_gateway.models.RefundStatus.PENDING
+        """)
+    int completePending(
+        @Param("id") String id,
+        @Param("status") RefundStatus status,
+        @Param("now") LocalDateTime now
+    );
+
+    List<Refund> findTop100ByStatusAndUpdatedAtBeforeOrderByUpdatedAt(RefundStatus status, LocalDateTime cutoff);
+
+    /**
+     * Take over a refund that has been PENDING since before {@code cutoff}.
+     *
+     * @return 1 if this caller now owns the refund
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("""
+        UPDATE Refund r
+        SET r.updatedAt = :now
+        WHERE r.id = :id
+          AND r.status = com.xiong.payment_gateway.models.RefundStatus.PENDING
+          AND r.updatedAt < :cutoff
+        """)
+    int claimStalePending(
+        @Param("id") String id,
+        @Param("cutoff") LocalDateTime cutoff,
+        @Param("now") LocalDateTime now
+    );
+
+    /**
+     * Settlement lines for refunds created in [from, to) against the merchant's payments, in
+     * (createdAt, id) order, streamed from the JDBC cursor. Must be consumed and closed inside
+     * a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+        SELECT new com.xiong.payment_gateway.dto.SettlementRow('REFUND', r.id, r.transactionId, t.merchantId,
+            cast(r.status as String), r.amount, t.currency, r.createdAt, r.updatedAt)
+        FROM Refund r
+        JOIN PaymentTransaction t ON t.id = r.transactionId
+        WHERE t.merchantId = :merchantId
+          AND r.createdAt >= :from
+          AND r.createdAt < :to
+        ORDER BY r.createdAt, r.id
+        """)
+    Stream<SettlementRow> streamSettlementRows(
+        @Param("merchantId") String merchantId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to);
 }
@@ -4,11 +4,27 @@ import com.xiong.payment_gateway.models.WebhookEvent;
 import com.xiong.payment_gateway.models.WebhookStatus;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface WebhookRepository extends JpaRepository<WebhookEvent, String> {
     List<WebhookEvent> findByStatus(WebhookStatus status);
+
+    /**
+     * Lock a batch of pending events that are due for (re)delivery, skipping rows
+     * already locked by another dispatcher. Must run inside a transaction.
+     */
+    @Query(value = """
+        SELECT * FROM webhook_events
+        WHERE status = 'PENDING' AND next_retry <= :now
+        ORDER BY next_retry
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+        """, nativeQuery = true)
+    List<WebhookEvent> claimDueEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
 }
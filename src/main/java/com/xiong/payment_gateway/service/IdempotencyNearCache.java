@@ -0,0 +1,76 @@
+package com.xiong.payment_gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * In-process tier in front of Redis for idempotency key to transaction ID lookups.
+ * Only completed mappings are cached; pending reservations always go to Redis.
+ * Invalidations are broadcast over Redis pub/sub so every node drops the entry.
+ *
+ * Hits, misses, evictions and size are published as the {@code cache.*} meters tagged
+ * {@code cache=idempotency.near}.
+ */
+@Component
+@Slf4j
+public class IdempotencyNearCache implements MessageListener {
+    static final String INVALIDATION_CHANNEL = "idempotency:invalidate";
+    private static final long MAX_ENTRIES = 100_000;
+    // Well below the 24h Redis TTL so a local entry never outlives its Redis key
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Cache<String, String> cache = Caffeine.newBuilder()
+        .maximumSize(MAX_ENTRIES)
+        .expireAfterWrite(TTL)
+        .recordStats()
+        .build();
+
+    public IdempotencyNearCache(
+        RedisTemplate<String, String> redisTemplate,
+        RedisMessageListenerContainer listenerContainer,
+        MeterRegistry meterRegistry
+    ) {
+        this.redisTemplate = redisTemplate;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotency.near");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public String get(String idempotencyKey) {
+        return cache.getIfPresent(idempotencyKey);
+    }
+
+    public void put(String idempotencyKey, String transactionId) {
+        cache.put(idempotencyKey, transactionId);
+    }
+
+    /**
+     * Drop the entry locally and on every other node subscribed to the invalidation channel.
+     */
+    public void invalidate(String idempotencyKey) {
+        cache.invalidate(idempotencyKey);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, idempotencyKey);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast idempotency cache invalidation for key {}", idempotencyKey, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        cache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
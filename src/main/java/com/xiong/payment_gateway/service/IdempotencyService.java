@@ -1,35 +1,497 @@
 package com.xiong.payment_gateway.service;
 
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.repository.IdempotencyReservationRepository;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Idempotency keys are reserved in Redis. While Redis is failing (commands are bounded by
+ * {@code spring.data.redis.timeout}) or its circuit breaker is open, keys are reserved in
+ * PostgreSQL instead: an {@code INSERT ... ON CONFLICT DO NOTHING} into
+ * {@code idempotency_reservations} for in-flight keys, and the unique idempotency key of
+ * {@code payment_transactions} for completed ones. Keys completed during the outage are
+ * written back to Redis once it answers again.
+ *
+ * Published meters: {@code idempotency.checks} by {@code tier} (redis or database), whose
+ * ratio is the fallback rate, {@code idempotency.redis.failures},
+ * {@code idempotency.circuit.state} (0 closed, 1 half-open, 2 open) and
+ * {@code idempotency.refill.pending}.
+ */
 @Service
+@Slf4j
 public class IdempotencyService {
     private final RedisTemplate<String, String> redisTemplate;
+    private final IdempotencyNearCache nearCache;
+    private final PaymentRepository paymentRepository;
+    private final IdempotencyReservationRepository reservationRepository;
     private static final String KEY_PREFIX = "idempotency:";
     private static final long TTL_HOURS = 24;
 
-    public IdempotencyService(RedisTemplate<String, String> redisTemplate) {
+    // Marker stored while the owning request is still creating its transaction.
+    // Short TTL so a crashed owner cannot block the key for the full 24 hours.
+    static final String PENDING_MARKER = "__pending__";
+    private static final long PENDING_TTL_SECONDS = 30;
+    private static final long WAIT_TIMEOUT_MILLIS = 5_000;
+    private static final long WAIT_POLL_MILLIS = 50;
+
+    private static final int REDIS_FAILURE_THRESHOLD = 3;
+    private static final Duration REDIS_OPEN_DURATION = Duration.ofSeconds(5);
+    // Beyond this, keys completed during an outage are left to PaymentService's
+    // duplicate-key handling instead of being written back to Redis
+    private static final int MAX_PENDING_REFILL = 100_000;
+    private static final int REFILL_BATCH_SIZE = 500;
+
+    private final CircuitBreaker redisBreaker =
+        new CircuitBreaker("idempotency Redis", REDIS_FAILURE_THRESHOLD, REDIS_OPEN_DURATION);
+    // Keys this node reserved in the database, to be deleted there when completed or released
+    private final Set<String> databaseReservations = ConcurrentHashMap.newKeySet();
+    // Keys completed while Redis was unavailable, mapped to their transaction IDs
+    private final Map<String, String> pendingRefill = new ConcurrentHashMap<>();
+    private final Counter redisChecks;
+    private final Counter databaseChecks;
+    private final Counter redisFailures;
+
+    // GET the key; if absent, SET it to the pending marker. Returns the previous
+    // value (nil when the caller now owns the key) in a single round trip.
+    static final RedisScript<String> RESERVE_SCRIPT = new DefaultRedisScript<>(
+        "local existing = redis.call('GET', KEYS[1]) " +
+        "if existing then return existing end " +
+        "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) " +
+        "return false",
+        String.class
+    );
+
+    // Batch form of RESERVE_SCRIPT: one entry per key, the existing value or "" when reserved.
+    // All keys must hash to the same slot when running against Redis Cluster.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESERVE_ALL_SCRIPT = new DefaultRedisScript<>(
+        "local result = {} " +
+        "for i, key in ipairs(KEYS) do " +
+        "  local existing = redis.call('GET', key) " +
+        "  if existing then result[i] = existing " +
+        "  else redis.call('SET', key, ARGV[1], 'EX', ARGV[2]) result[i] = '' end " +
+        "end " +
+        "return result",
+        List.class
+    );
+
+    // DEL each key only while it still holds the pending marker, so a release never drops a key
+    // another request has since completed or taken over. Returns the number of keys deleted.
+    // Same slot restriction as RESERVE_ALL_SCRIPT.
+    static final RedisScript<Long> RELEASE_ALL_SCRIPT = new DefaultRedisScript<>(
+        "local released = 0 " +
+        "for _, key in ipairs(KEYS) do " +
+        "  if redis.call('GET', key) == ARGV[1] then redis.call('DEL', key) released = released + 1 end " +
+        "end " +
+        "return released",
+        Long.class
+    );
+
+    public IdempotencyService(
+        RedisTemplate<String, String> redisTemplate,
+        IdempotencyNearCache nearCache,
+        PaymentRepository paymentRepository,
+        IdempotencyReservationRepository reservationRepository,
+        MeterRegistry meterRegistry
+    ) {
         this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.paymentRepository = paymentRepository;
+        this.reservationRepository = reservationRepository;
+        this.redisChecks = Counter.builder("idempotency.checks")
+            .tag("tier", "redis")
+            .description("Idempotency keys checked, by the tier that answered")
+            .register(meterRegistry);
+        this.databaseChecks = Counter.builder("idempotency.checks")
+            .tag("tier", "database")
+            .description("Idempotency keys checked, by the tier that answered")
+            .register(meterRegistry);
+        this.redisFailures = Counter.builder("idempotency.redis.failures")
+            .description("Redis idempotency commands that failed or timed out")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.circuit.state", redisBreaker, b -> b.state().ordinal())
+            .description("Idempotency Redis circuit breaker state (0 closed, 1 half-open, 2 open)")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.refill.pending", pendingRefill, Map::size)
+            .description("Completed keys waiting to be written back to Redis")
+            .register(meterRegistry);
     }
 
-    public boolean isProcessed(String idempotencyKey) {
-        return Boolean.TRUE.equals(
-            redisTemplate.hasKey(KEY_PREFIX + idempotencyKey)
+    /**
+     * Atomically reserve an idempotency key or observe the transaction that already owns it.
+     * If another request holds the key but has not finished yet, waits briefly for its result.
+     *
+     * @param idempotencyKey the client supplied idempotency key
+     * @return a reservation that is either owned by the caller or carries the existing transaction ID
+     * @throws PaymentGatewayException if a concurrent request with the same key is still in flight
+     */
+    public Reservation reserve(String idempotencyKey) {
+        String cached = nearCache.get(idempotencyKey);
+        if (cached != null) {
+            return Reservation.existing(cached);
+        }
+
+        if (!redisBreaker.tryAcquirePermission()) {
+            return reserveInDatabase(idempotencyKey);
+        }
+        String existing;
+        try {
+            existing = redisTemplate.execute(
+                RESERVE_SCRIPT,
+                List.of(KEY_PREFIX + idempotencyKey),
+                PENDING_MARKER,
+                String.valueOf(PENDING_TTL_SECONDS)
+            );
+        } catch (DataAccessException e) {
+            redisFailed("reserve", e);
+            return reserveInDatabase(idempotencyKey);
+        }
+        redisBreaker.onSuccess();
+        redisChecks.increment();
+        if (existing == null) {
+            return Reservation.owned();
+        }
+        if (!PENDING_MARKER.equals(existing)) {
+            nearCache.put(idempotencyKey, existing);
+            return Reservation.existing(existing);
+        }
+        return awaitInFlight(idempotencyKey);
+    }
+
+    /**
+     * Reserve many distinct keys in a single Redis round trip. Keys already held by an
+     * in-flight request are then awaited one by one, as in {@link #reserve(String)};
+     * a key still in flight after the wait is reported as {@link Reservation#isInProgress()}.
+     * Without Redis, keys are reserved in the database one at a time.
+     *
+     * @return reservations in the same order as {@code idempotencyKeys}
+     */
+    public Map<String, Reservation> reserveAll(Collection<String> idempotencyKeys) {
+        Map<String, Reservation> reservations = new LinkedHashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String key : idempotencyKeys) {
+            String cached = nearCache.get(key);
+            if (cached != null) {
+                reservations.put(key, Reservation.existing(cached));
+            } else {
+                reservations.put(key, null);
+                uncached.add(key);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return reservations;
+        }
+
+        List<?> existing = null;
+        boolean fromRedis = false;
+        if (redisBreaker.tryAcquirePermission()) {
+            try {
+                existing = redisTemplate.execute(
+                    RESERVE_ALL_SCRIPT,
+                    uncached.stream().map(key -> KEY_PREFIX + key).toList(),
+                    PENDING_MARKER,
+                    String.valueOf(PENDING_TTL_SECONDS)
+                );
+                fromRedis = true;
+            } catch (DataAccessException e) {
+                redisFailed("reserveAll", e);
+            }
+        }
+        if (!fromRedis) {
+            for (String key : uncached) {
+                try {
+                    reservations.put(key, reserveInDatabase(key));
+                } catch (PaymentGatewayException e) {
+                    reservations.put(key, Reservation.inProgress());
+                }
+            }
+            return reservations;
+        }
+        redisBreaker.onSuccess();
+        redisChecks.increment(uncached.size());
+        for (int i = 0; i < uncached.size(); i++) {
+            String key = uncached.get(i);
+            Object value = existing != null && i < existing.size() ? existing.get(i) : null;
+            String transactionId = value != null ? value.toString() : "";
+            if (transactionId.isEmpty()) {
+                reservations.put(key, Reservation.owned());
+            } else if (PENDING_MARKER.equals(transactionId)) {
+                try {
+                    reservations.put(key, awaitInFlight(key));
+                } catch (PaymentGatewayException e) {
+                    reservations.put(key, Reservation.inProgress());
+                }
+            } else {
+                nearCache.put(key, transactionId);
+                reservations.put(key, Reservation.existing(transactionId));
+            }
+        }
+        return reservations;
+    }
+
+    /**
+     * Reserve the key with {@code INSERT ... ON CONFLICT DO NOTHING}. The completed-payment
+     * check comes after the insert: an owner deletes its reservation only once its payment
+     * has committed, so a successful insert either sees that payment or there is none.
+     */
+    private Reservation reserveInDatabase(String idempotencyKey) {
+        databaseChecks.increment();
+        LocalDateTime now = LocalDateTime.now();
+        boolean reserved = reservationRepository.insertIfAbsent(idempotencyKey, now) == 1
+            || reservationRepository.claimStale(idempotencyKey, now.minusSeconds(PENDING_TTL_SECONDS), now) == 1;
+        if (!reserved) {
+            return awaitInFlight(idempotencyKey);
+        }
+        databaseReservations.add(idempotencyKey);
+
+        Optional<String> existing = paymentRepository.findIdByIdempotencyKey(idempotencyKey);
+        if (existing.isPresent()) {
+            releaseDatabaseReservations(List.of(idempotencyKey));
+            nearCache.put(idempotencyKey, existing.get());
+            return Reservation.existing(existing.get());
+        }
+        return Reservation.owned();
+    }
+
+    private Reservation awaitInFlight(String idempotencyKey) {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(WAIT_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            String value = getTransactionId(idempotencyKey);
+            if (value == null) {
+                // Owner released the key (its transaction rolled back); try to take it over
+                return reserve(idempotencyKey);
+            }
+            if (!PENDING_MARKER.equals(value)) {
+                return Reservation.existing(value);
+            }
+        }
+        throw new PaymentGatewayException(
+            "A request with the same idempotency key is still being processed",
+            HttpStatus.CONFLICT,
+            "IDEMPOTENCY_KEY_IN_PROGRESS"
         );
     }
 
+    /**
+     * Drop a reservation whose owning request did not produce a transaction,
+     * so that a retry with the same key can be processed.
+     */
+    public void release(String idempotencyKey) {
+        releaseAll(List.of(idempotencyKey));
+    }
+
+    /**
+     * Only keys still holding the pending marker are deleted in Redis. A pending marker that
+     * cannot be deleted because Redis is unavailable expires on its own after
+     * {@link #PENDING_TTL_SECONDS}.
+     */
+    public void releaseAll(Collection<String> idempotencyKeys) {
+        if (idempotencyKeys.isEmpty()) {
+            return;
+        }
+        releaseDatabaseReservations(idempotencyKeys);
+        if (!redisBreaker.tryAcquirePermission()) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_ALL_SCRIPT, idempotencyKeys.stream().map(key -> KEY_PREFIX + key).toList(),
+                PENDING_MARKER);
+        } catch (DataAccessException e) {
+            redisFailed("release", e);
+            return;
+        }
+        redisBreaker.onSuccess();
+        idempotencyKeys.forEach(nearCache::invalidate);
+    }
+
+    public boolean isProcessed(String idempotencyKey) {
+        if (nearCache.get(idempotencyKey) != null) {
+            return true;
+        }
+        if (redisBreaker.tryAcquirePermission()) {
+            try {
+                boolean exists = Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + idempotencyKey));
+                redisBreaker.onSuccess();
+                return exists;
+            } catch (DataAccessException e) {
+                redisFailed("isProcessed", e);
+            }
+        }
+        return transactionIdFromDatabase(idempotencyKey) != null;
+    }
+
     public void markAsProcessed(String idempotencyKey, String transactionId) {
-        redisTemplate.opsForValue().set(
-            KEY_PREFIX + idempotencyKey,
-            transactionId,
-            TTL_HOURS,
-            TimeUnit.HOURS
-        );
+        markAllAsProcessed(Map.of(idempotencyKey, transactionId));
+    }
+
+    /**
+     * Pipelined form of {@link #markAsProcessed(String, String)}. Must be called once the
+     * transactions are committed; without Redis the keys are queued for {@link #refillRedis()}.
+     */
+    public void markAllAsProcessed(Map<String, String> transactionIdsByKey) {
+        if (transactionIdsByKey.isEmpty()) {
+            return;
+        }
+        transactionIdsByKey.forEach(nearCache::put);
+        boolean written = false;
+        if (redisBreaker.tryAcquirePermission()) {
+            try {
+                setAll(transactionIdsByKey);
+                redisBreaker.onSuccess();
+                written = true;
+            } catch (DataAccessException e) {
+                redisFailed("markAsProcessed", e);
+            }
+        }
+        if (!written) {
+            transactionIdsByKey.forEach((key, transactionId) -> {
+                if (pendingRefill.size() < MAX_PENDING_REFILL) {
+                    pendingRefill.put(key, transactionId);
+                }
+            });
+        }
+        releaseDatabaseReservations(transactionIdsByKey.keySet());
+    }
+
+    /**
+     * Write keys completed while Redis was unavailable back to Redis, a batch at a time,
+     * so that retries reaching Redis first are still answered as duplicates.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void refillRedis() {
+        if (pendingRefill.isEmpty() || !redisBreaker.tryAcquirePermission()) {
+            return;
+        }
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : pendingRefill.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() == REFILL_BATCH_SIZE) {
+                break;
+            }
+        }
+        try {
+            setAll(batch);
+        } catch (DataAccessException e) {
+            redisFailed("refill", e);
+            return;
+        }
+        redisBreaker.onSuccess();
+        batch.forEach(pendingRefill::remove);
+        log.info("Refilled {} idempotency keys into Redis, {} pending", batch.size(), pendingRefill.size());
+    }
+
+    private void setAll(Map<String, String> transactionIdsByKey) {
+        if (transactionIdsByKey.size() == 1) {
+            transactionIdsByKey.forEach((key, transactionId) ->
+                redisTemplate.opsForValue().set(KEY_PREFIX + key, transactionId, TTL_HOURS, TimeUnit.HOURS));
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                transactionIdsByKey.forEach((key, transactionId) ->
+                    ops.opsForValue().set(KEY_PREFIX + key, transactionId, TTL_HOURS, TimeUnit.HOURS));
+                return null;
+            }
+        });
     }
 
     public String getTransactionId(String idempotencyKey) {
-        return redisTemplate.opsForValue().get(KEY_PREFIX + idempotencyKey);
+        String cached = nearCache.get(idempotencyKey);
+        if (cached != null) {
+            return cached;
+        }
+        if (redisBreaker.tryAcquirePermission()) {
+            try {
+                String value = redisTemplate.opsForValue().get(KEY_PREFIX + idempotencyKey);
+                redisBreaker.onSuccess();
+                if (value != null && !PENDING_MARKER.equals(value)) {
+                    nearCache.put(idempotencyKey, value);
+                }
+                return value;
+            } catch (DataAccessException e) {
+                redisFailed("get", e);
+            }
+        }
+        return transactionIdFromDatabase(idempotencyKey);
+    }
+
+    // Same answers as the Redis value: the transaction ID, the pending marker, or null
+    private String transactionIdFromDatabase(String idempotencyKey) {
+        Optional<String> transactionId = paymentRepository.findIdByIdempotencyKey(idempotencyKey);
+        if (transactionId.isPresent()) {
+            nearCache.put(idempotencyKey, transactionId.get());
+            return transactionId.get();
+        }
+        return reservationRepository.existsById(idempotencyKey) ? PENDING_MARKER : null;
+    }
+
+    private void releaseDatabaseReservations(Collection<String> idempotencyKeys) {
+        List<String> owned = idempotencyKeys.stream().filter(databaseReservations::remove).toList();
+        if (!owned.isEmpty()) {
+            reservationRepository.deleteByKeys(owned);
+        }
+    }
+
+    private void redisFailed(String operation, DataAccessException e) {
+        redisBreaker.onFailure();
+        redisFailures.increment();
+        log.warn("Redis {} failed, falling back to the database for idempotency: {}", operation, e.getMessage());
+    }
+
+    /**
+     * Outcome of {@link #reserve(String)}: either the caller owns the key,
+     * or the key already maps to an existing transaction. {@link #reserveAll(Collection)}
+     * can also report a key that is still held by another in-flight request.
+     */
+    public record Reservation(boolean isOwner, String existingTransactionId) {
+        static Reservation owned() {
+            return new Reservation(true, null);
+        }
+
+        static Reservation existing(String transactionId) {
+            return new Reservation(false, transactionId);
+        }
+
+        static Reservation inProgress() {
+            return new Reservation(false, null);
+        }
+
+        public boolean isInProgress() {
+            return !isOwner && existingTransactionId == null;
+        }
     }
-}
\ No newline at end of file
+}
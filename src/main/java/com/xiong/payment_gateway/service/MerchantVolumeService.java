@@ -0,0 +1,319 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.dto.MerchantVolume;
+import com.xiong.payment_gateway.dto.MerchantVolumeReport;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.models.MerchantDailyVolume;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.repository.MerchantVolumeRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-merchant, per-currency, per-day payment and refund volume, kept up to date as payments
+ * and refunds are finalized so that dashboards and risk checks read a handful of rows from
+ * {@code merchant_daily_volumes} instead of aggregating {@code payment_transactions}.
+ *
+ * Committed transitions are added to in-memory {@link LongAdder} counters (amounts in minor
+ * units), so concurrent payments of a merchant never contend on its database row; every second
+ * the accumulated deltas are written in one batch of relative UPDATEs, inserting the rows of new
+ * days. Each node flushes its own deltas, so the totals are exact across nodes, but trail the
+ * payments by up to a flush interval, and deltas not yet flushed are lost if a node dies.
+ */
+@Service
+@Slf4j
+public class MerchantVolumeService {
+    // Scale of the amount columns, numeric(38,2)
+    private static final int AMOUNT_SCALE = 2;
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private static final String UPDATE_SQL = """
+        UPDATE merchant_daily_volumes
+        SET payment_count = payment_count + ?,
+            gross_amount = gross_amount + ?,
+            failed_count = failed_count + ?,
+            refund_count = refund_count + ?,
+            refunded_amount = refunded_amount + ?,
+            updated_at = ?
+        WHERE merchant_id = ? AND currency = ? AND volume_date = ?
+        """;
+    private static final String INSERT_SQL = """
+        INSERT INTO merchant_daily_volumes (payment_count, gross_amount, failed_count, refund_count,
+            refunded_amount, updated_at, merchant_id, currency, volume_date)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private record Key(String merchantId, String currency, LocalDate date) {
+    }
+
+    private static final class Counters {
+        final LongAdder paymentCount = new LongAdder();
+        final LongAdder grossMinor = new LongAdder();
+        final LongAdder failedCount = new LongAdder();
+        final LongAdder refundCount = new LongAdder();
+        final LongAdder refundedMinor = new LongAdder();
+    }
+
+    // A flushed or restored set of deltas; the fields follow the column order of both statements
+    private record Delta(Key key, long paymentCount, long grossMinor, long failedCount,
+                         long refundCount, long refundedMinor) {
+    }
+
+    private final MerchantVolumeRepository volumeRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+
+    public MerchantVolumeService(
+        MerchantVolumeRepository volumeRepository,
+        JdbcTemplate jdbcTemplate,
+        TransactionTemplate transactionTemplate
+    ) {
+        this.volumeRepository = volumeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Count payments that have just been moved to SUCCESS or FAILED, once the surrounding
+     * transaction commits. Callers pass only the payments their own update moved, so a payment
+     * finalized twice (e.g. also by the reconciler) is counted once.
+     */
+    public void recordPaymentsAfterCommit(Collection<PaymentTransaction> finalized) {
+        if (finalized.isEmpty()) {
+            return;
+        }
+        List<PaymentTransaction> payments = List.copyOf(finalized);
+        afterCommit(() -> {
+            LocalDate today = LocalDate.now();
+            for (PaymentTransaction payment : payments) {
+                Counters day = countersFor(payment, today);
+                if (payment.getStatus() == TransactionStatus.SUCCESS) {
+                    day.paymentCount.increment();
+                    day.grossMinor.add(toMinor(payment.getAmount()));
+                } else if (payment.getStatus() == TransactionStatus.FAILED) {
+                    day.failedCount.increment();
+                }
+            }
+        });
+    }
+
+    /**
+     * Count a refund that has just been moved to COMPLETED, once the surrounding transaction commits.
+     */
+    public void recordRefundAfterCommit(Refund refund, PaymentTransaction transaction) {
+        long amount = toMinor(refund.getAmount());
+        afterCommit(() -> {
+            Counters day = countersFor(transaction, LocalDate.now());
+            day.refundCount.increment();
+            day.refundedMinor.add(amount);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private Counters countersFor(PaymentTransaction transaction, LocalDate date) {
+        Key key = new Key(transaction.getMerchantId(), transaction.getCurrency(), date);
+        Counters existing = counters.get(key);
+        return existing != null ? existing : counters.computeIfAbsent(key, k -> new Counters());
+    }
+
+    /**
+     * Write the deltas accumulated since the last flush. If the write fails they are put back
+     * and go out with the next one.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        List<Delta> deltas = drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(deltas));
+        } catch (Exception e) {
+            log.warn("Failed to flush {} merchant volume deltas, retrying with the next flush", deltas.size(), e);
+            deltas.forEach(this::restore);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private List<Delta> drain() {
+        // Payments are counted on the day they are finalized, so nothing adds to days before
+        // yesterday any more once their last deltas are taken
+        LocalDate stale = LocalDate.now().minusDays(1);
+        List<Delta> deltas = new ArrayList<>();
+        counters.forEach((key, day) -> {
+            if (key.date().isBefore(stale)) {
+                counters.remove(key, day);
+            }
+            // Adds racing with the reset are kept for the next flush, never lost
+            Delta delta = new Delta(key, day.paymentCount.sumThenReset(), day.grossMinor.sumThenReset(),
+                day.failedCount.sumThenReset(), day.refundCount.sumThenReset(), day.refundedMinor.sumThenReset());
+            if (delta.paymentCount() != 0 || delta.failedCount() != 0 || delta.refundCount() != 0
+                    || delta.grossMinor() != 0 || delta.refundedMinor() != 0) {
+                deltas.add(delta);
+            }
+        });
+        return deltas;
+    }
+
+    private void restore(Delta delta) {
+        Counters day = counters.computeIfAbsent(delta.key(), k -> new Counters());
+        day.paymentCount.add(delta.paymentCount());
+        day.grossMinor.add(delta.grossMinor());
+        day.failedCount.add(delta.failedCount());
+        day.refundCount.add(delta.refundCount());
+        day.refundedMinor.add(delta.refundedMinor());
+    }
+
+    /**
+     * Steady state is a single batch of UPDATEs. Rows missing from it are inserted; if another
+     * node inserts one first, the unique key fails this flush and the retry updates the row.
+     */
+    private void write(List<Delta> deltas) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, setter(deltas, now));
+        List<Delta> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(deltas.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, setter(missing, now));
+        }
+        log.debug("Flushed {} merchant volume deltas ({} new days)", deltas.size(), missing.size());
+    }
+
+    private static BatchPreparedStatementSetter setter(List<Delta> deltas, Timestamp now) {
+        return new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Delta delta = deltas.get(i);
+                ps.setLong(1, delta.paymentCount());
+                ps.setBigDecimal(2, fromMinor(delta.grossMinor()));
+                ps.setLong(3, delta.failedCount());
+                ps.setLong(4, delta.refundCount());
+                ps.setBigDecimal(5, fromMinor(delta.refundedMinor()));
+                ps.setTimestamp(6, now);
+                ps.setString(7, delta.key().merchantId());
+                ps.setString(8, delta.key().currency());
+                ps.setDate(9, Date.valueOf(delta.key().date()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        };
+    }
+
+    /**
+     * A merchant's volume from {@code from} through {@code to}, per currency and per day.
+     */
+    public MerchantVolumeReport getVolume(String merchantId, LocalDate from, LocalDate to) {
+        if (merchantId == null || merchantId.isBlank()) {
+            throw invalid("INVALID_QUERY", "merchantId is required");
+        }
+        if (from.isAfter(to)) {
+            throw invalid("INVALID_TIME_RANGE", "from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw invalid("INVALID_TIME_RANGE", "The range may span at most " + MAX_RANGE_DAYS + " days");
+        }
+
+        List<MerchantVolume> daily = new ArrayList<>();
+        Map<String, MerchantVolume> totals = new TreeMap<>();
+        for (MerchantDailyVolume row : volumeRepository
+                .findByMerchantIdAndVolumeDateBetweenOrderByVolumeDateAscCurrencyAsc(merchantId, from, to)) {
+            daily.add(MerchantVolume.builder()
+                .currency(row.getCurrency())
+                .date(row.getVolumeDate())
+                .paymentCount(row.getPaymentCount())
+                .grossAmount(row.getGrossAmount())
+                .failedCount(row.getFailedCount())
+                .refundCount(row.getRefundCount())
+                .refundedAmount(row.getRefundedAmount())
+                .netAmount(row.getGrossAmount().subtract(row.getRefundedAmount()))
+                .build());
+            totals.compute(row.getCurrency(), (currency, total) -> add(total, daily.get(daily.size() - 1)));
+        }
+        return MerchantVolumeReport.builder()
+            .merchantId(merchantId)
+            .from(from)
+            .to(to)
+            .totals(List.copyOf(totals.values()))
+            .daily(daily)
+            .build();
+    }
+
+    // Totals carry no date; a null total starts from the day's figures
+    private static MerchantVolume add(MerchantVolume total, MerchantVolume day) {
+        return MerchantVolume.builder()
+            .currency(day.getCurrency())
+            .paymentCount(day.getPaymentCount() + (total != null ? total.getPaymentCount() : 0))
+            .grossAmount(total != null ? total.getGrossAmount().add(day.getGrossAmount()) : day.getGrossAmount())
+            .failedCount(day.getFailedCount() + (total != null ? total.getFailedCount() : 0))
+            .refundCount(day.getRefundCount() + (total != null ? total.getRefundCount() : 0))
+            .refundedAmount(total != null
+                ? total.getRefundedAmount().add(day.getRefundedAmount()) : day.getRefundedAmount())
+            .netAmount(total != null ? total.getNetAmount().add(day.getNetAmount()) : day.getNetAmount())
+            .build();
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        // Rounded like the numeric column rounds the stored amount
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, AMOUNT_SCALE);
+    }
+
+    private static PaymentGatewayException invalid(String errorCode, String message) {
+        return new PaymentGatewayException(message, HttpStatus.BAD_REQUEST, errorCode);
+    }
+}
@@ -0,0 +1,157 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.dto.PaymentPage;
+import com.xiong.payment_gateway.dto.PaymentSummary;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Lists a merchant's transactions with keyset pagination on (merchantId, createdAt, id).
+ *
+ * A page continues strictly after the last row of the previous one, as identified by an
+ * opaque cursor, so every page is an index range scan no matter how deep the client pages,
+ * and rows inserted meanwhile never shift or repeat later pages. Rows are streamed from the
+ * database cursor as {@link PaymentSummary} projections and handed to the caller one by one.
+ */
+@Service
+public class PaymentSearchService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    // Stand-ins for an open time range; both are valid PostgreSQL timestamps
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final char CURSOR_SEPARATOR = '|';
+
+    private final PaymentRepository paymentRepository;
+
+    public PaymentSearchService(PaymentRepository paymentRepository) {
+        this.paymentRepository = paymentRepository;
+    }
+
+    /**
+     * @param status optional
+     * @param from   optional, inclusive
+     * @param to     optional, exclusive
+     * @param cursor the previous page's {@code nextCursor}, or null for the first page
+     */
+    @Transactional(readOnly = true)
+    public PaymentPage listPayments(
+        String merchantId,
+        TransactionStatus status,
+        LocalDateTime from,
+        LocalDateTime to,
+        String cursor,
+        int pageSize
+    ) {
+        List<PaymentSummary> items = new ArrayList<>(Math.min(pageSize, MAX_PAGE_SIZE));
+        String nextCursor = forEachPayment(merchantId, status, from, to, cursor, pageSize, items::add);
+        return PaymentPage.builder()
+            .items(items)
+            .nextCursor(nextCursor)
+            .build();
+    }
+
+    /**
+     * Hand up to {@code pageSize} matching transactions to {@code action}, in (createdAt, id)
+     * order, as they are read from the database.
+     *
+     * @return the cursor of the following page, or null if there are no more matches
+     */
+    @Transactional(readOnly = true)
+    public String forEachPayment(
+        String merchantId,
+        TransactionStatus status,
+        LocalDateTime from,
+        LocalDateTime to,
+        String cursor,
+        int pageSize,
+        Consumer<PaymentSummary> action
+    ) {
+        if (merchantId == null || merchantId.isBlank()) {
+            throw invalid("INVALID_QUERY", "merchantId is required");
+        }
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw invalid("INVALID_PAGE_SIZE", "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        LocalDateTime lower = from != null ? from : EARLIEST;
+        LocalDateTime upper = to != null ? to : LATEST;
+        if (!lower.isBefore(upper)) {
+            throw invalid("INVALID_TIME_RANGE", "from must be before to");
+        }
+
+        // Without a cursor, start just before the first row at or after 'from': no ID sorts
+        // below the empty string
+        LocalDateTime afterCreatedAt = lower;
+        String afterId = "";
+        if (cursor != null && !cursor.isEmpty()) {
+            Position position = decode(cursor);
+            // A cursor from before 'from' (the range was narrowed) restarts at 'from'
+            if (!position.createdAt().isBefore(lower)) {
+                afterCreatedAt = position.createdAt();
+                afterId = position.id();
+            }
+        }
+
+        // One row more than asked for tells whether another page follows
+        Limit limit = Limit.of(pageSize + 1);
+        int delivered = 0;
+        PaymentSummary last = null;
+        try (Stream<PaymentSummary> rows = status == null
+                ? paymentRepository.streamByMerchant(merchantId, afterCreatedAt, afterId, upper, limit)
+                : paymentRepository.streamByMerchantAndStatus(merchantId, status, afterCreatedAt, afterId, upper, limit)) {
+            for (PaymentSummary row : (Iterable<PaymentSummary>) rows::iterator) {
+                if (delivered == pageSize) {
+                    return cursorOf(last);
+                }
+                action.accept(row);
+                last = row;
+                delivered++;
+            }
+        }
+        return null;
+    }
+
+    private record Position(LocalDateTime createdAt, String id) {
+    }
+
+    /**
+     * The cursor that continues a listing right after {@code row}.
+     */
+    public static String cursorOf(PaymentSummary row) {
+        String position = row.getCreatedAt().toString() + CURSOR_SEPARATOR + row.getTransactionId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Position decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(CURSOR_SEPARATOR);
+            if (separator > 0) {
+                return new Position(LocalDateTime.parse(position.substring(0, separator)),
+                    position.substring(separator + 1));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Reported below
+        }
+        throw invalid("INVALID_CURSOR", "Cursor is malformed; pass back a nextCursor unchanged");
+    }
+
+    private static PaymentGatewayException invalid(String errorCode, String message) {
+        return new PaymentGatewayException(message, HttpStatus.BAD_REQUEST, errorCode);
+    }
+}
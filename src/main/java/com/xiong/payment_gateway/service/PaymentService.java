@@ -1,59 +1,339 @@
 package com.xiong.payment_gateway.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.xiong.payment_gateway.dto.ApiResponse;
+import com.xiong.payment_gateway.dto.PaymentBatchItemResult;
+import com.xiong.payment_gateway.dto.PaymentBatchResponse;
 import com.xiong.payment_gateway.dto.PaymentRequest;
 import com.xiong.payment_gateway.dto.PaymentResponse;
+import com.xiong.payment_gateway.dto.PaymentStatusEvent;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
 import com.xiong.payment_gateway.exception.ResourceNotFoundException;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.metrics.GatewayMetrics.Stage;
 import com.xiong.payment_gateway.models.PaymentTransaction;
 import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.provider.PaymentProviderClient;
+import com.xiong.payment_gateway.provider.ProviderResult;
 import com.xiong.payment_gateway.repository.PaymentRepository;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
 @Service
 @Slf4j
 public class PaymentService {
+    static final int MAX_BATCH_SIZE = 1000;
+    // How long a request waits for the provider before answering 202 with the payment still PROCESSING
+    private static final Duration RESPONSE_WAIT = Duration.ofSeconds(5);
+
     private final PaymentRepository paymentRepository;
     private final IdempotencyService idempotencyService;
     private final WebhookService webhookService;
+    private final PaymentSnapshotCache snapshotCache;
+    private final PaymentStatusEventBus statusEventBus;
+    private final PaymentProviderClient providerClient;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final MerchantVolumeService volumeService;
+    private final GatewayMetrics metrics;
 
     public PaymentService(
         PaymentRepository paymentRepository,
         IdempotencyService idempotencyService,
-        WebhookService webhookService
+        WebhookService webhookService,
+        PaymentSnapshotCache snapshotCache,
+        PaymentStatusEventBus statusEventBus,
+        PaymentProviderClient providerClient,
+        TransactionTemplate transactionTemplate,
+        Validator validator,
+        MerchantVolumeService volumeService,
+        GatewayMetrics metrics
     ) {
         this.paymentRepository = paymentRepository;
         this.idempotencyService = idempotencyService;
         this.webhookService = webhookService;
+        this.snapshotCache = snapshotCache;
+        this.statusEventBus = statusEventBus;
+        this.providerClient = providerClient;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.volumeService = volumeService;
+        this.metrics = metrics;
     }
 
-    @Transactional
+    /**
+     * Create a payment in three stages, so that no database connection or row lock is held
+     * while the provider is working:
+     * 1. insert the payment as PROCESSING and commit, publishing the idempotency key;
+     * 2. call the provider outside any transaction, on {@link PaymentProviderClient}'s pool;
+     * 3. record the final status, with its outbox webhook, in a second short transaction.
+     *
+     * The caller waits up to {@link #RESPONSE_WAIT} for stage 3 and gets 201 with the final
+     * status; after that it gets 202 with the payment still PROCESSING, which completes in
+     * the background.
+     */
     public ApiResponse<PaymentResponse> processPayment(PaymentRequest request) {
-        // Check idempotency
-        if (idempotencyService.isProcessed(request.getIdempotencyKey())) {
-            String existingTxnId = idempotencyService.getTransactionId(
-                request.getIdempotencyKey()
-            );
-            PaymentTransaction existing = paymentRepository.findById(existingTxnId)
-                .orElseThrow(() -> new ResourceNotFoundException("PaymentTransaction", "id", existingTxnId));
-            
-            log.info("Returning existing transaction for idempotency key: {}, transaction: {}", 
-                request.getIdempotencyKey(), existingTxnId);
-            
-            // Return 409 CONFLICT for duplicate (idempotent) request
-            PaymentResponse response = buildResponse(existing, "Duplicate request - returning existing transaction");
+        // Reserve the idempotency key, or observe the transaction that already owns it
+        IdempotencyService.Reservation reservation = metrics.observe(
+            Stage.PAYMENT_IDEMPOTENCY_CHECK,
+            () -> idempotencyService.reserve(request.getIdempotencyKey()));
+        if (!reservation.isOwner()) {
+            return duplicateResponse(request.getIdempotencyKey(), reservation.existingTransactionId());
+        }
+
+        // Stage 1: persist as PROCESSING
+        PaymentTransaction transaction;
+        try {
+            transaction = inTransaction(Stage.PAYMENT_DB_INSERT, status -> {
+                // Publish the transaction ID once committed, or free the key on rollback
+                Map<String, String> reservedTransactionIds =
+                    bindReservationsToTransaction(List.of(request.getIdempotencyKey()));
+                PaymentTransaction saved = paymentRepository.save(newTransaction(request));
+                reservedTransactionIds.put(request.getIdempotencyKey(), saved.getId());
+                snapshotCache.putAfterCommit(saved);
+                statusEventBus.publishAfterCommit(saved);
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // The key was reserved in the other idempotency tier (Redis or the database) while
+            // Redis was failing over; the unique idempotency key still admits only one payment
+            String existingTxnId = paymentRepository.findIdByIdempotencyKey(request.getIdempotencyKey())
+                .orElseThrow(() -> e);
+            return duplicateResponse(request.getIdempotencyKey(), existingTxnId);
+        }
+
+        // Stages 2 and 3: provider call, then finalize
+        List<PaymentTransaction> completed = await(authorize(List.of(transaction)), List.of());
+        if (completed.isEmpty()) {
+            log.info("Payment {} still processing after {}", transaction.getId(), RESPONSE_WAIT);
             return ApiResponse.<PaymentResponse>builder()
-                .data(response)
-                .statusCode(HttpStatus.CONFLICT)
-                .message("Duplicate request detected - returning existing transaction")
-                .isDuplicate(true)
+                .data(buildResponse(transaction, "Payment accepted and is being processed"))
+                .statusCode(HttpStatus.ACCEPTED)
+                .message("Payment accepted")
+                .isDuplicate(false)
                 .build();
         }
 
-        // Create transaction
+        // Return 201 CREATED for new payment
+        PaymentResponse response = buildResponse(completed.get(0), "Payment processed successfully");
+        return ApiResponse.<PaymentResponse>builder()
+            .data(response)
+            .statusCode(HttpStatus.CREATED)
+            .message("Payment created successfully")
+            .isDuplicate(false)
+            .build();
+    }
+
+    private ApiResponse<PaymentResponse> duplicateResponse(String idempotencyKey, String existingTxnId) {
+        metrics.recordDuplicates(1);
+        PaymentTransaction existing = getTransaction(existingTxnId);
+
+        log.info("Returning existing transaction for idempotency key: {}, transaction: {}",
+            idempotencyKey, existingTxnId);
+
+        // Return 409 CONFLICT for duplicate (idempotent) request
+        PaymentResponse response = buildResponse(existing, "Duplicate request - returning existing transaction");
+        return ApiResponse.<PaymentResponse>builder()
+            .data(response)
+            .statusCode(HttpStatus.CONFLICT)
+            .message("Duplicate request detected - returning existing transaction")
+            .isDuplicate(true)
+            .build();
+    }
+
+    /**
+     * Create many payments with the same stages as {@link #processPayment}. Idempotency keys
+     * are reserved in a single Redis round trip, new rows are written with JDBC batch inserts,
+     * provider calls run concurrently and all results are finalized, with their webhooks, in
+     * one short transaction. Every item gets its own result, in request order.
+     */
+    public PaymentBatchResponse processPaymentsBatch(List<PaymentRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            throw new PaymentGatewayException(
+                "A batch must contain between 1 and " + MAX_BATCH_SIZE + " payments",
+                HttpStatus.BAD_REQUEST,
+                "INVALID_BATCH_SIZE"
+            );
+        }
+
+        PaymentBatchItemResult[] results = new PaymentBatchItemResult[requests.size()];
+
+        // Validate each item on its own and collapse keys repeated within the batch
+        Map<String, Integer> firstIndexByKey = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequest request = requests.get(i);
+            Optional<String> validationError = validationError(request);
+            if (validationError.isPresent()) {
+                results[i] = rejected(request.getIdempotencyKey(), "VALIDATION_FAILED", validationError.get());
+            } else {
+                firstIndexByKey.putIfAbsent(request.getIdempotencyKey(), i);
+            }
+        }
+
+        Map<String, IdempotencyService.Reservation> reservations = metrics.observe(
+            Stage.PAYMENT_IDEMPOTENCY_CHECK,
+            () -> idempotencyService.reserveAll(firstIndexByKey.keySet()));
+        List<String> ownedKeys = reservations.entrySet().stream()
+            .filter(entry -> entry.getValue().isOwner())
+            .map(Map.Entry::getKey)
+            .toList();
+        List<PaymentRequest> toCreate = new ArrayList<>(ownedKeys.size());
+        Map<String, String> existingIdsByKey = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : firstIndexByKey.entrySet()) {
+            String key = entry.getKey();
+            IdempotencyService.Reservation reservation = reservations.get(key);
+            if (reservation.isOwner()) {
+                toCreate.add(requests.get(entry.getValue()));
+            } else if (reservation.isInProgress()) {
+                results[entry.getValue()] = rejected(key, "IDEMPOTENCY_KEY_IN_PROGRESS",
+                    "A request with the same idempotency key is still being processed");
+            } else {
+                existingIdsByKey.put(key, reservation.existingTransactionId());
+            }
+        }
+
+        // Stage 1: JDBC batch insert (hibernate.jdbc.batch_size); IDs are assigned before insert
+        List<PaymentTransaction> created = inTransaction(Stage.PAYMENT_DB_INSERT, status -> {
+            Map<String, String> reservedTransactionIds = bindReservationsToTransaction(ownedKeys);
+            List<PaymentTransaction> saved = paymentRepository.saveAll(
+                toCreate.stream().map(this::newTransaction).toList());
+            for (PaymentTransaction transaction : saved) {
+                reservedTransactionIds.put(transaction.getIdempotencyKey(), transaction.getId());
+                snapshotCache.putAfterCommit(transaction);
+                statusEventBus.publishAfterCommit(transaction);
+            }
+            return saved;
+        });
+
+        // Stages 2 and 3; items the provider has not answered in time are reported as PROCESSING
+        Map<String, PaymentTransaction> completedById = new HashMap<>();
+        await(authorize(created), List.<PaymentTransaction>of())
+            .forEach(transaction -> completedById.put(transaction.getId(), transaction));
+        for (PaymentTransaction transaction : created) {
+            int index = firstIndexByKey.get(transaction.getIdempotencyKey());
+            PaymentTransaction current = completedById.getOrDefault(transaction.getId(), transaction);
+            results[index] = PaymentBatchItemResult.builder()
+                .idempotencyKey(transaction.getIdempotencyKey())
+                .outcome(PaymentBatchItemResult.Outcome.CREATED)
+                .payment(buildResponse(current, current.getStatus() == TransactionStatus.PROCESSING
+                    ? "Payment accepted and is being processed"
+                    : "Payment processed successfully"))
+                .build();
+        }
+
+        // Duplicates of earlier requests: load all existing transactions in one query
+        Map<String, PaymentTransaction> existingById = new HashMap<>();
+        paymentRepository.findAllById(existingIdsByKey.values())
+            .forEach(transaction -> existingById.put(transaction.getId(), transaction));
+        existingIdsByKey.forEach((key, transactionId) -> {
+            PaymentTransaction existing = existingById.get(transactionId);
+            results[firstIndexByKey.get(key)] = existing == null
+                ? rejected(key, "RESOURCE_NOT_FOUND", "PaymentTransaction not found with id : '" + transactionId + "'")
+                : duplicate(existing);
+        });
+
+        // Keys repeated within the batch resolve to whatever their first occurrence produced
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            PaymentBatchItemResult first = results[firstIndexByKey.get(requests.get(i).getIdempotencyKey())];
+            results[i] = first.getPayment() == null
+                ? first
+                : PaymentBatchItemResult.builder()
+                    .idempotencyKey(first.getIdempotencyKey())
+                    .outcome(PaymentBatchItemResult.Outcome.DUPLICATE)
+                    .payment(first.getPayment())
+                    .build();
+        }
+
+        List<PaymentBatchItemResult> resultList = Arrays.asList(results);
+        PaymentBatchResponse response = PaymentBatchResponse.builder()
+            .results(resultList)
+            .created(count(resultList, PaymentBatchItemResult.Outcome.CREATED))
+            .duplicates(count(resultList, PaymentBatchItemResult.Outcome.DUPLICATE))
+            .rejected(count(resultList, PaymentBatchItemResult.Outcome.REJECTED))
+            .build();
+        metrics.recordDuplicates(response.getDuplicates());
+        log.info("Processed payment batch of {} items: {} created, {} duplicates, {} rejected",
+            requests.size(), response.getCreated(), response.getDuplicates(), response.getRejected());
+        return response;
+    }
+
+    /**
+     * Bean-validate a request that did not come through a {@code @Valid} controller argument.
+     *
+     * @return the violations as one message, or empty if the request is valid
+     */
+    public Optional<String> validationError(PaymentRequest request) {
+        Set<ConstraintViolation<PaymentRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(violations.stream()
+            .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+            .sorted()
+            .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Publish reserved keys when the surrounding transaction completes: on commit, keys that
+     * were mapped to a transaction ID are marked processed and any others are released;
+     * on rollback every key is released.
+     *
+     * @return map to fill with the transaction ID created for each key
+     */
+    private Map<String, String> bindReservationsToTransaction(List<String> idempotencyKeys) {
+        Map<String, String> transactionIds = new ConcurrentHashMap<>();
+        if (idempotencyKeys.isEmpty()) {
+            return transactionIds;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    idempotencyService.markAllAsProcessed(transactionIds);
+                    idempotencyService.releaseAll(idempotencyKeys.stream()
+                        .filter(key -> !transactionIds.containsKey(key))
+                        .toList());
+                } else {
+                    idempotencyService.releaseAll(idempotencyKeys);
+                }
+            }
+        });
+        return transactionIds;
+    }
+
+    private PaymentTransaction newTransaction(PaymentRequest request) {
         PaymentTransaction transaction = new PaymentTransaction();
         transaction.setMerchantId(request.getMerchantId());
         transaction.setAmount(request.getAmount());
@@ -61,48 +341,150 @@ public class PaymentService {
         transaction.setIdempotencyKey(request.getIdempotencyKey());
         transaction.setCustomerId(request.getCustomerId());
         transaction.setPaymentMethod(request.getPaymentMethod());
+        transaction.setWebhookUrl(request.getWebhookUrl());
         transaction.setMetadata(request.getMetadata());
         transaction.setStatus(TransactionStatus.PROCESSING);
+        return transaction;
+    }
+
+    /**
+     * Submit a payment that was left PROCESSING, e.g. by a node that stopped between stages.
+     * Relies on the provider being idempotent on the transaction ID.
+     */
+    public CompletableFuture<List<PaymentTransaction>> resumeProcessing(PaymentTransaction transaction) {
+        log.info("Resuming processing of payment {}", transaction.getId());
+        return authorize(List.of(transaction));
+    }
+
+    /**
+     * Stages 2 and 3: call the provider for every payment, then finalize all answered payments
+     * in one transaction. Payments whose outcome is unknown (the call failed or timed out) stay
+     * PROCESSING for the reconciler; payments the provider pool refused are failed, since the
+     * provider never saw them.
+     *
+     * @return the finalized payments
+     */
+    private CompletableFuture<List<PaymentTransaction>> authorize(List<PaymentTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        List<CompletableFuture<ProviderResult>> calls = transactions.stream()
+            .map(providerClient::authorize)
+            .toList();
+        return CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new))
+            .handle((ignored, error) -> {
+                Map<TransactionStatus, List<String>> idsByStatus = new EnumMap<>(TransactionStatus.class);
+                for (int i = 0; i < transactions.size(); i++) {
+                    TransactionStatus outcome = outcomeOf(transactions.get(i), calls.get(i));
+                    if (outcome != null) {
+                        idsByStatus.computeIfAbsent(outcome, k -> new ArrayList<>()).add(transactions.get(i).getId());
+                    }
+                }
+                return completeProcessing(idsByStatus);
+            });
+    }
+
+    private static TransactionStatus outcomeOf(PaymentTransaction transaction, CompletableFuture<ProviderResult> call) {
+        try {
+            ProviderResult result = call.join();
+            return result.approved() ? TransactionStatus.SUCCESS : TransactionStatus.FAILED;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                return TransactionStatus.FAILED;
+            }
+            log.warn("Provider outcome unknown for payment {}, leaving it PROCESSING", transaction.getId(), e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Stage 3. Payments finalized concurrently elsewhere, e.g. by the reconciler, are returned
+     * with their current status but get no second snapshot, status event, webhook or metric.
+     *
+     * @return every payment in {@code idsByStatus}, as it is now
+     */
+    private List<PaymentTransaction> completeProcessing(Map<TransactionStatus, List<String>> idsByStatus) {
+        if (idsByStatus.isEmpty()) {
+            return List.of();
+        }
+        List<PaymentTransaction> moved = new ArrayList<>();
+        List<PaymentTransaction> finalized = inTransaction(Stage.PAYMENT_DB_UPDATE, status -> {
+            Map<String, TransactionStatus> finalStatuses = new HashMap<>();
+            idsByStatus.forEach((finalStatus, group) -> group.forEach(id -> finalStatuses.put(id, finalStatus)));
+            // Row locks make the PROCESSING check and the update below one step
+            List<PaymentTransaction> completed = paymentRepository.findAllByIdForUpdate(finalStatuses.keySet());
+            for (PaymentTransaction transaction : completed) {
+                // Payments finalized elsewhere first are left alone
+                if (transaction.getStatus() == TransactionStatus.PROCESSING) {
+                    transaction.setStatus(finalStatuses.get(transaction.getId()));
+                    moved.add(transaction);
+                }
+            }
+            // Batched updates; also brings version and updatedAt up to date for the events below
+            paymentRepository.flush();
+            for (PaymentTransaction transaction : moved) {
+                snapshotCache.putAfterCommit(transaction);
+                statusEventBus.publishAfterCommit(transaction);
+                logOutcome(transaction);
+            }
+            volumeService.recordPaymentsAfterCommit(moved);
+            // Queue webhooks in the outbox; committed atomically with the final status
+            webhookService.enqueueWebhooks(moved);
+            return completed;
+        });
+        moved.forEach(transaction -> metrics.recordPaymentOutcome(transaction.getStatus()));
+        return finalized;
+    }
+
+    private <T> T inTransaction(Stage stage, TransactionCallback<T> work) {
+        return metrics.observe(stage, () -> transactionTemplate.execute(work));
+    }
 
-        // Save transaction
-        transaction = paymentRepository.save(transaction);
-        
-        // Mark as processed in Redis
-        idempotencyService.markAsProcessed(
-            request.getIdempotencyKey(),
-            transaction.getId()
-        );
-
-        // Simulate payment processing
-        boolean success = processWithPaymentProvider(transaction);
-        
-        if (success) {
-            transaction.setStatus(TransactionStatus.SUCCESS);
+    /**
+     * Wait up to {@link #RESPONSE_WAIT} for background work, or give up and return
+     * {@code fallback} while it carries on.
+     */
+    private static <T> T await(CompletableFuture<T> future, T fallback) {
+        try {
+            return future.get(RESPONSE_WAIT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return fallback;
+        } catch (ExecutionException e) {
+            log.error("Failed to complete payment processing", e.getCause());
+            return fallback;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        }
+    }
+
+    private void logOutcome(PaymentTransaction transaction) {
+        if (transaction.getStatus() == TransactionStatus.SUCCESS) {
             log.info("Payment successful: {}", transaction.getId());
-        } else {
-            transaction.setStatus(TransactionStatus.FAILED);
+        } else if (transaction.getStatus() == TransactionStatus.FAILED) {
             log.error("Payment failed: {}", transaction.getId());
         }
-        
-        transaction = paymentRepository.save(transaction);
+    }
 
-        // Send webhook asynchronously
-        webhookService.sendWebhook(transaction, request.getWebhookUrl());
+    private PaymentBatchItemResult duplicate(PaymentTransaction existing) {
+        return PaymentBatchItemResult.builder()
+            .idempotencyKey(existing.getIdempotencyKey())
+            .outcome(PaymentBatchItemResult.Outcome.DUPLICATE)
+            .payment(buildResponse(existing, "Duplicate request - returning existing transaction"))
+            .build();
+    }
 
-        // Return 201 CREATED for new payment
-        PaymentResponse response = buildResponse(transaction, "Payment processed successfully");
-        return ApiResponse.<PaymentResponse>builder()
-            .data(response)
-            .statusCode(HttpStatus.CREATED)
-            .message("Payment created successfully")
-            .isDuplicate(false)
+    private static PaymentBatchItemResult rejected(String idempotencyKey, String errorCode, String message) {
+        return PaymentBatchItemResult.builder()
+            .idempotencyKey(idempotencyKey)
+            .outcome(PaymentBatchItemResult.Outcome.REJECTED)
+            .errorCode(errorCode)
+            .errorMessage(message)
             .build();
     }
 
-    private boolean processWithPaymentProvider(PaymentTransaction transaction) {
-        // Mock payment processing - replace with actual payment provider integration
-        // For demo: succeed 90% of the time
-        return Math.random() < 0.9;
+    private static int count(List<PaymentBatchItemResult> results, PaymentBatchItemResult.Outcome outcome) {
+        return (int) results.stream().filter(r -> r.getOutcome() == outcome).count();
     }
 
     private PaymentResponse buildResponse(PaymentTransaction txn, String message) {
@@ -116,8 +498,50 @@ public class PaymentService {
             .build();
     }
 
+    /**
+     * Read-through lookup: served from the snapshot cache when possible, otherwise loaded
+     * from the database and cached.
+     */
     public PaymentTransaction getTransaction(String transactionId) {
-        return paymentRepository.findById(transactionId)
+        PaymentTransaction cached = snapshotCache.get(transactionId);
+        if (cached != null) {
+            return cached;
+        }
+        PaymentTransaction transaction = paymentRepository.findById(transactionId)
             .orElseThrow(() -> new ResourceNotFoundException("PaymentTransaction", "id", transactionId));
+        snapshotCache.put(transaction);
+        return transaction;
+    }
+
+    /**
+     * Push the transaction's status to {@code listener} now and again on every later transition.
+     * The subscription is opened before the current status is read, so a transition committed
+     * in between is delivered rather than lost.
+     *
+     * @throws ResourceNotFoundException if the transaction does not exist
+     */
+    public PaymentStatusEventBus.Subscription watchTransaction(
+        String transactionId,
+        Consumer<PaymentStatusEvent> listener
+    ) {
+        PaymentStatusEventBus.Subscription subscription =
+            statusEventBus.subscribeToTransaction(transactionId, listener);
+        try {
+            subscription.deliver(PaymentStatusEventBus.toEvent(getTransaction(transactionId)));
+        } catch (RuntimeException e) {
+            subscription.close();
+            throw e;
+        }
+        return subscription;
+    }
+
+    /**
+     * Push every status transition of the merchant's transactions to {@code listener}.
+     */
+    public PaymentStatusEventBus.Subscription watchMerchant(
+        String merchantId,
+        Consumer<PaymentStatusEvent> listener
+    ) {
+        return statusEventBus.subscribeToMerchant(merchantId, listener);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,128 @@
+package com.xiong.payment_gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Redis cache of committed {@link PaymentTransaction} snapshots for status polling.
+ *
+ * Each entry is a hash holding the entity's {@code version} and its JSON. Writes go through
+ * a compare-and-set script that only replaces an entry with a strictly newer version, so a
+ * reader that loaded a row just before a status change can never overwrite the newer
+ * snapshot written after that change committed.
+ *
+ * A failed write leaves the previous entry in place, possibly stale, but only for
+ * {@code STALE_TTL}: deleting it instead would drop the version guard, letting a reader that
+ * loaded the row before the change re-insert the older version for the full TTL.
+ */
+@Component
+@Slf4j
+public class PaymentSnapshotCache {
+    private static final String KEY_PREFIX = "payment:snapshot:";
+    private static final long TTL_SECONDS = 600;
+    private static final Duration STALE_TTL = Duration.ofSeconds(5);
+
+    static final RedisScript<Long> PUT_IF_NEWER_SCRIPT = new DefaultRedisScript<>(
+        "local current = redis.call('HGET', KEYS[1], 'v') " +
+        "if current and tonumber(current) >= tonumber(ARGV[1]) then return 0 end " +
+        "redis.call('HSET', KEYS[1], 'v', ARGV[1], 'd', ARGV[2]) " +
+        "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+        "return 1",
+        Long.class
+    );
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PaymentSnapshotCache(
+        RedisTemplate<String, String> redisTemplate,
+        ObjectMapper objectMapper,
+        MeterRegistry meterRegistry
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.hits = Counter.builder("payment.snapshot.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("payment.snapshot.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * @return the cached snapshot, or {@code null} on a miss or if Redis is unavailable
+     */
+    public PaymentTransaction get(String transactionId) {
+        try {
+            Object json = redisTemplate.opsForHash().get(KEY_PREFIX + transactionId, "d");
+            if (json == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return objectMapper.readValue(json.toString(), PaymentTransaction.class);
+        } catch (Exception e) {
+            log.warn("Failed to read payment snapshot {} from cache", transactionId, e);
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Store a snapshot of a committed row, unless a newer version is already cached.
+     */
+    public void put(PaymentTransaction transaction) {
+        if (transaction.getId() == null || transaction.getVersion() == null) {
+            return;
+        }
+        String key = KEY_PREFIX + transaction.getId();
+        try {
+            redisTemplate.execute(
+                PUT_IF_NEWER_SCRIPT,
+                List.of(key),
+                transaction.getVersion().toString(),
+                objectMapper.writeValueAsString(transaction),
+                String.valueOf(TTL_SECONDS)
+            );
+        } catch (Exception e) {
+            // Keep the older entry as a version guard, but let it go soon
+            log.warn("Failed to cache payment snapshot {}", transaction.getId(), e);
+            expireSoonQuietly(key);
+        }
+    }
+
+    /**
+     * Store the snapshot once the surrounding transaction commits; nothing is cached on rollback.
+     */
+    public void putAfterCommit(PaymentTransaction transaction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(transaction);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(transaction);
+            }
+        });
+    }
+
+    private void expireSoonQuietly(String key) {
+        try {
+            redisTemplate.expire(key, STALE_TTL);
+        } catch (Exception e) {
+            log.warn("Failed to expire payment snapshot {}", key, e);
+        }
+    }
+}
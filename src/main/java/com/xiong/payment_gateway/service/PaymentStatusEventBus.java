@@ -0,0 +1,286 @@
+package com.xiong.payment_gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiong.payment_gateway.config.BoundedExecutor;
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.dto.PaymentStatusEvent;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TransactionStatus;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus for payment status transitions, so clients can watch a transaction or a
+ * merchant instead of polling {@code GetPayment}.
+ *
+ * Transitions are published once their database transaction commits and are fanned out over
+ * Redis pub/sub, so a watcher connected to any gateway node sees changes made on every node.
+ * If Redis is unavailable, events still reach watchers on the publishing node.
+ *
+ * Listeners write to client sockets and may block, so events are never handed to them on the
+ * Redis listener threads. Each subscription queues its own events and drains them in order on
+ * a small bounded pool, one task per subscription at a time; a watcher that falls
+ * {@value #MAX_PENDING_EVENTS} events behind is dropped rather than buffered without bound.
+ */
+@Component
+@Slf4j
+public class PaymentStatusEventBus implements MessageListener {
+    static final String CHANNEL = "payment:status";
+    static final int MAX_PENDING_EVENTS = 256;
+    private static final int DELIVERY_THREADS = 8;
+    // At most one queued task per subscription, so this bounds busy watchers, not events
+    private static final int MAX_QUEUED_DELIVERIES = 10_000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Set<Subscription>> transactionSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> merchantSubscriptions = new ConcurrentHashMap<>();
+    private final BoundedExecutor deliveryExecutor;
+
+    public PaymentStatusEventBus(
+        RedisTemplate<String, String> redisTemplate,
+        ObjectMapper objectMapper,
+        RedisMessageListenerContainer listenerContainer,
+        BoundedExecutors executors,
+        MeterRegistry meterRegistry
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.deliveryExecutor = executors.create("status-events-", DELIVERY_THREADS, MAX_QUEUED_DELIVERIES);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        Gauge.builder("payment.status.watchers", this, PaymentStatusEventBus::subscriptionCount)
+            .description("Open payment status subscriptions on this node")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Publish the transaction's current status once the surrounding transaction commits;
+     * nothing is published on rollback.
+     */
+    public void publishAfterCommit(PaymentTransaction transaction) {
+        PaymentStatusEvent event = toEvent(transaction);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(event);
+            }
+        });
+    }
+
+    void publish(PaymentStatusEvent event) {
+        try {
+            // Delivered back to this node too, through onMessage
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast status of transaction {}, notifying local watchers only",
+                event.getTransactionId(), e);
+            dispatch(event);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            dispatch(objectMapper.readValue(
+                new String(message.getBody(), StandardCharsets.UTF_8), PaymentStatusEvent.class));
+        } catch (Exception e) {
+            log.warn("Dropping malformed payment status event", e);
+        }
+    }
+
+    private void dispatch(PaymentStatusEvent event) {
+        deliverAll(transactionSubscriptions.get(event.getTransactionId()), event);
+        deliverAll(merchantSubscriptions.get(event.getMerchantId()), event);
+    }
+
+    private static void deliverAll(Set<Subscription> subscriptions, PaymentStatusEvent event) {
+        if (subscriptions != null) {
+            subscriptions.forEach(subscription -> subscription.deliver(event));
+        }
+    }
+
+    /**
+     * Watch one transaction. Events at or below the last delivered version are dropped, and
+     * the subscription closes itself after delivering a terminal status.
+     */
+    public Subscription subscribeToTransaction(String transactionId, Consumer<PaymentStatusEvent> listener) {
+        return register(transactionSubscriptions, transactionId, new Subscription(listener, true, deliveryExecutor));
+    }
+
+    /**
+     * Watch every transaction of a merchant, until closed.
+     */
+    public Subscription subscribeToMerchant(String merchantId, Consumer<PaymentStatusEvent> listener) {
+        return register(merchantSubscriptions, merchantId, new Subscription(listener, false, deliveryExecutor));
+    }
+
+    private Subscription register(Map<String, Set<Subscription>> subscriptions, String key, Subscription subscription) {
+        subscription.onClose = () -> subscriptions.computeIfPresent(key, (k, set) -> {
+            set.remove(subscription);
+            return set.isEmpty() ? null : set;
+        });
+        subscriptions.compute(key, (k, set) -> {
+            Set<Subscription> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscription);
+            return target;
+        });
+        return subscription;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    private int subscriptionCount() {
+        return transactionSubscriptions.values().stream().mapToInt(Set::size).sum()
+            + merchantSubscriptions.values().stream().mapToInt(Set::size).sum();
+    }
+
+    public static PaymentStatusEvent toEvent(PaymentTransaction transaction) {
+        TransactionStatus status = transaction.getStatus();
+        return PaymentStatusEvent.builder()
+            .transactionId(transaction.getId())
+            .merchantId(transaction.getMerchantId())
+            .status(status.toString())
+            .amount(transaction.getAmount())
+            .refundedAmount(transaction.getRefundedAmount())
+            .currency(transaction.getCurrency())
+            .version(transaction.getVersion())
+            .updatedAt(transaction.getUpdatedAt())
+            .terminal(status == TransactionStatus.FAILED || status == TransactionStatus.REFUNDED)
+            .build();
+    }
+
+    /**
+     * A registered watcher. Events are queued and handed to the listener one at a time, in
+     * order, on the bus's delivery pool; a listener that throws or falls too far behind is
+     * unsubscribed.
+     */
+    public static final class Subscription implements AutoCloseable {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Consumer<PaymentStatusEvent> listener;
+        private final boolean singleTransaction;
+        private final Executor executor;
+        private final Queue<PaymentStatusEvent> pending = new ArrayDeque<>();
+        private Runnable onClose;
+        private Long lastVersion;
+        private boolean draining;
+        private boolean closed;
+
+        private Subscription(Consumer<PaymentStatusEvent> listener, boolean singleTransaction, Executor executor) {
+            this.listener = listener;
+            this.singleTransaction = singleTransaction;
+            this.executor = executor;
+        }
+
+        /**
+         * Queue the event for the listener; never blocks on the listener itself.
+         */
+        public void deliver(PaymentStatusEvent event) {
+            boolean overflow = false;
+            boolean startDrain = false;
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (singleTransaction) {
+                    if (lastVersion != null && event.getVersion() != null && event.getVersion() <= lastVersion) {
+                        return;
+                    }
+                    lastVersion = event.getVersion();
+                }
+                if (pending.size() >= MAX_PENDING_EVENTS) {
+                    overflow = true;
+                } else {
+                    pending.add(event);
+                    startDrain = !draining;
+                    draining = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (overflow) {
+                log.warn("Dropping payment status watcher that is {} events behind", MAX_PENDING_EVENTS);
+                close();
+            } else if (startDrain) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    log.warn("Dropping payment status watcher: delivery pool saturated");
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                PaymentStatusEvent event;
+                lock.lock();
+                try {
+                    event = closed ? null : pending.poll();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    log.debug("Closing payment status subscription after listener failure: {}", e.getMessage());
+                    close();
+                    return;
+                }
+                if (singleTransaction && event.isTerminal()) {
+                    close();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.xiong.payment_gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of in-flight asynchronous calls per destination host.
+ * Calls over the limit are queued and started as earlier ones complete,
+ * so no thread is ever parked waiting for a permit. Once a host's queue is
+ * full, further calls fail fast with {@link RejectedExecutionException}.
+ *
+ * Per-host state is kept for at most {@code maxHosts} hosts and dropped once a host has been
+ * idle for {@code idleTimeout}. Calls already started on dropped state still complete and
+ * release normally.
+ */
+public class PerHostLimiter {
+    private final int maxConcurrentPerHost;
+    private final int maxQueuedPerHost;
+    private final Cache<String, HostState> hosts;
+
+    public PerHostLimiter(int maxConcurrentPerHost, int maxQueuedPerHost, Duration idleTimeout, long maxHosts) {
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.maxQueuedPerHost = maxQueuedPerHost;
+        this.hosts = Caffeine.newBuilder()
+            .expireAfterAccess(idleTimeout)
+            .maximumSize(maxHosts)
+            .build();
+    }
+
+    public <T> CompletableFuture<T> submit(String host, Supplier<CompletableFuture<T>> call) {
+        HostState state = hosts.get(host, h -> new HostState());
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (Throwable t) {
+                future = CompletableFuture.failedFuture(t);
+            }
+            future.whenComplete((value, error) -> {
+                state.release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+        if (!state.acquireOrQueue(start)) {
+            result.completeExceptionally(new RejectedExecutionException("Too many queued calls for host " + host));
+        }
+        return result;
+    }
+
+    /**
+     * Calls in flight across all tracked hosts.
+     */
+    public int inFlight() {
+        return hosts.asMap().values().stream().mapToInt(HostState::inFlight).sum();
+    }
+
+    /**
+     * Calls queued across all tracked hosts.
+     */
+    public int queued() {
+        return hosts.asMap().values().stream().mapToInt(HostState::queued).sum();
+    }
+
+    private final class HostState {
+        // ReentrantLock rather than synchronized so virtual threads are never pinned here
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        boolean acquireOrQueue(Runnable start) {
+            lock.lock();
+            try {
+                if (inFlight >= maxConcurrentPerHost) {
+                    if (waiting.size() >= maxQueuedPerHost) {
+                        return false;
+                    }
+                    waiting.add(start);
+                    return true;
+                }
+                inFlight++;
+            } finally {
+                lock.unlock();
+            }
+            start.run();
+            return true;
+        }
+
+        void release() {
+            Runnable next;
+            lock.lock();
+            try {
+                next = waiting.poll();
+                if (next == null) {
+                    inFlight--;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (next != null) {
+                next.run();
+            }
+        }
+
+        int inFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int queued() {
+            lock.lock();
+            try {
+                return waiting.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
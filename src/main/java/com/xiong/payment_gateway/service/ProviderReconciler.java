@@ -0,0 +1,94 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.RefundStatus;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.provider.PaymentProviderProperties;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+import com.xiong.payment_gateway.repository.RefundRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Finishes payments left PROCESSING and refunds left PENDING, e.g. by a node that stopped
+ * between persisting them and recording the provider's answer. Each stale row is claimed with
+ * a conditional update first, so several gateway nodes can run this side by side.
+ */
+@Component
+@Slf4j
+public class ProviderReconciler {
+    // Well above the request wait and payment.provider.call-timeout, so in-flight work is never resubmitted
+    private static final Duration STALE_AFTER = Duration.ofMinutes(2);
+    // Past the call timeout, for the finalizing transactions
+    private static final Duration FINALIZE_MARGIN = Duration.ofSeconds(10);
+
+    private final PaymentRepository paymentRepository;
+    private final RefundRepository refundRepository;
+    private final PaymentService paymentService;
+    private final RefundService refundService;
+    private final Duration resumeWait;
+
+    public ProviderReconciler(
+        PaymentRepository paymentRepository,
+        RefundRepository refundRepository,
+        PaymentService paymentService,
+        RefundService refundService,
+        PaymentProviderProperties providerProperties
+    ) {
+        if (providerProperties.getCallTimeout().compareTo(STALE_AFTER) >= 0) {
+            throw new IllegalStateException("payment.provider.call-timeout must be below " + STALE_AFTER
+                + ", or calls still in flight would be submitted again");
+        }
+        this.paymentRepository = paymentRepository;
+        this.refundRepository = refundRepository;
+        this.paymentService = paymentService;
+        this.refundService = refundService;
+        this.resumeWait = providerProperties.getCallTimeout().plus(FINALIZE_MARGIN);
+    }
+
+    @Scheduled(fixedDelay = 30_000)
+    public void reconcile() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime cutoff = now.minus(STALE_AFTER);
+            List<CompletableFuture<?>> resumed = new ArrayList<>();
+
+            for (PaymentTransaction transaction : paymentRepository
+                    .findTop100ByStatusAndUpdatedAtBeforeOrderByUpdatedAt(TransactionStatus.PROCESSING, cutoff)) {
+                if (paymentRepository.claimStaleProcessing(transaction.getId(), cutoff, now) == 1) {
+                    resumed.add(paymentService.resumeProcessing(transaction));
+                }
+            }
+            for (Refund refund : refundRepository
+                    .findTop100ByStatusAndUpdatedAtBeforeOrderByUpdatedAt(RefundStatus.PENDING, cutoff)) {
+                if (refundRepository.claimStalePending(refund.getId(), cutoff, now) == 1) {
+                    resumed.add(refundService.resumeRefund(refund));
+                }
+            }
+
+            if (!resumed.isEmpty()) {
+                log.warn("Resumed {} stale payments and refunds", resumed.size());
+                // Provider calls end within the call timeout; this only guards the finalizing step
+                CompletableFuture.allOf(resumed.toArray(CompletableFuture[]::new))
+                    .get(resumeWait.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            log.warn("Resumed payments and refunds still finishing after {}", resumeWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Failed to reconcile pending payments and refunds", e);
+        }
+    }
+}
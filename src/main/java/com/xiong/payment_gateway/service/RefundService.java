@@ -3,55 +3,105 @@ package com.xiong.payment_gateway.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.xiong.payment_gateway.dto.RefundBatchItemResult;
+import com.xiong.payment_gateway.dto.RefundBatchResponse;
 import com.xiong.payment_gateway.dto.RefundRequest;
 import com.xiong.payment_gateway.exception.PaymentGatewayException;
 import com.xiong.payment_gateway.exception.ResourceNotFoundException;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.metrics.GatewayMetrics.Stage;
 import com.xiong.payment_gateway.models.PaymentTransaction;
 import com.xiong.payment_gateway.models.Refund;
 import com.xiong.payment_gateway.models.RefundStatus;
 import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.provider.PaymentProviderClient;
+import com.xiong.payment_gateway.provider.ProviderResult;
 import com.xiong.payment_gateway.repository.PaymentRepository;
 import com.xiong.payment_gateway.repository.RefundRepository;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class RefundService {
+    static final int MAX_BATCH_SIZE = 1000;
+    // How long a request waits for the provider before returning the refund still PENDING
+    private static final Duration RESPONSE_WAIT = Duration.ofSeconds(5);
+
     private final RefundRepository refundRepository;
     private final PaymentRepository paymentRepository;
     private final WebhookService webhookService;
+    private final PaymentSnapshotCache snapshotCache;
+    private final PaymentStatusEventBus statusEventBus;
+    private final PaymentProviderClient providerClient;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final MerchantVolumeService volumeService;
+    private final GatewayMetrics metrics;
 
     public RefundService(
         RefundRepository refundRepository,
         PaymentRepository paymentRepository,
-        WebhookService webhookService
+        WebhookService webhookService,
+        PaymentSnapshotCache snapshotCache,
+        PaymentStatusEventBus statusEventBus,
+        PaymentProviderClient providerClient,
+        TransactionTemplate transactionTemplate,
+        Validator validator,
+        MerchantVolumeService volumeService,
+        GatewayMetrics metrics
     ) {
         this.refundRepository = refundRepository;
         this.paymentRepository = paymentRepository;
         this.webhookService = webhookService;
+        this.snapshotCache = snapshotCache;
+        this.statusEventBus = statusEventBus;
+        this.providerClient = providerClient;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.volumeService = volumeService;
+        this.metrics = metrics;
     }
 
-    @Transactional
+    /**
+     * Refund in three stages, like {@link PaymentService#processPayment}: reserve the amount and
+     * record the refund as PENDING, call the provider outside any transaction, then record the
+     * outcome in a second short transaction. The payment row is therefore never locked while
+     * the provider is working.
+     *
+     * @return the completed or failed refund, or the PENDING refund if the provider has not
+     *         answered within {@link #RESPONSE_WAIT}; it then completes in the background
+     */
     public Refund processRefund(RefundRequest request) {
-        PaymentTransaction transaction = paymentRepository
-            .findById(request.getTransactionId())
-            .orElseThrow(() -> new ResourceNotFoundException("PaymentTransaction", "id", request.getTransactionId()));
-
-        if (transaction.getStatus() != TransactionStatus.SUCCESS &&
-            transaction.getStatus() != TransactionStatus.PARTIAL_REFUND) {
-            throw new PaymentGatewayException(
-                "Transaction cannot be refunded. Current status: " + transaction.getStatus(),
-                HttpStatus.BAD_REQUEST,
-                "INVALID_TRANSACTION_STATUS"
-            );
-        }
-
         // Validate refund amount
         if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            metrics.recordRefundRejection("INVALID_REFUND_AMOUNT");
             throw new PaymentGatewayException(
                 "Refund amount must be greater than zero",
                 HttpStatus.BAD_REQUEST,
@@ -59,64 +109,398 @@ public class RefundService {
             );
         }
 
-        // Calculate total refunded amount
-        List<Refund> existingRefunds = refundRepository
-            .findByTransactionId(request.getTransactionId());
-        BigDecimal totalRefunded = existingRefunds.stream()
-            .filter(r -> r.getStatus() == RefundStatus.COMPLETED)
-            .map(Refund::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal remainingAmount = transaction.getAmount().subtract(totalRefunded);
-        
-        if (request.getAmount().compareTo(remainingAmount) > 0) {
+        // Stage 1: reserve the amount and record the refund
+        Refund refund = inTransaction(Stage.REFUND_DB_INSERT, status -> {
+            // Reserve the amount against the running refund balance: status check, balance
+            // check and increment in a single conditional UPDATE, so concurrent refunds cannot
+            // both pass the check.
+            int reserved = paymentRepository.reserveRefund(
+                request.getTransactionId(), request.getAmount(), LocalDateTime.now());
+            if (reserved == 0) {
+                PaymentGatewayException rejection = rejectionFor(request);
+                metrics.recordRefundRejection(rejection.getErrorCode());
+                throw rejection;
+            }
+
+            Refund pending = new Refund();
+            pending.setTransactionId(request.getTransactionId());
+            pending.setAmount(request.getAmount());
+            pending.setReason(request.getReason());
+            pending.setStatus(RefundStatus.PENDING);
+            pending = refundRepository.save(pending);
+
+            snapshotCache.putAfterCommit(loadTransaction(request.getTransactionId()));
+            return pending;
+        });
+
+        // Stages 2 and 3: provider call, then finalize
+        try {
+            return complete(refund).get(RESPONSE_WAIT.toMillis(), TimeUnit.MILLISECONDS).orElse(refund);
+        } catch (TimeoutException e) {
+            log.info("Refund {} still pending after {}", refund.getId(), RESPONSE_WAIT);
+        } catch (ExecutionException e) {
+            log.error("Failed to complete refund {}", refund.getId(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return refund;
+    }
+
+    /**
+     * Create many refunds with the same stages as {@link #processRefund}, batched:
+     * 1. one transaction row-locks every payment in the batch with a single query, checks the
+     *    balances in memory in request order, updates each payment once and inserts all
+     *    refunds as a JDBC batch;
+     * 2. provider calls for the same payment run one after another in request order, while
+     *    different payments run in parallel on {@link PaymentProviderClient}'s pool;
+     * 3. every answered refund is finalized in one transaction.
+     *
+     * Every item gets its own result, in request order; refunds the provider has not answered
+     * within {@link #RESPONSE_WAIT} are reported PENDING and complete in the background.
+     */
+    public RefundBatchResponse processRefundsBatch(List<RefundRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
             throw new PaymentGatewayException(
-                String.format("Refund amount exceeds remaining amount. Requested: %s, Available: %s", 
-                    request.getAmount(), remainingAmount),
+                "A batch must contain between 1 and " + MAX_BATCH_SIZE + " refunds",
                 HttpStatus.BAD_REQUEST,
-                "REFUND_AMOUNT_EXCEEDS_BALANCE"
+                "INVALID_BATCH_SIZE"
             );
         }
 
-        // Create refund
-        Refund refund = new Refund();
-        refund.setTransactionId(request.getTransactionId());
-        refund.setAmount(request.getAmount());
-        refund.setReason(request.getReason());
-        refund.setStatus(RefundStatus.PENDING);
-        refund = refundRepository.save(refund);
-
-        // Process refund (mock)
-        boolean success = processWithPaymentProvider(refund);
-        
-        if (success) {
-            refund.setStatus(RefundStatus.COMPLETED);
-            
-            // Update transaction status
-            BigDecimal newTotal = totalRefunded.add(request.getAmount());
-            if (newTotal.compareTo(transaction.getAmount()) == 0) {
-                transaction.setStatus(TransactionStatus.REFUNDED);
+        RefundBatchItemResult[] results = new RefundBatchItemResult[requests.size()];
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            Optional<String> validationError = validationError(requests.get(i));
+            if (validationError.isPresent()) {
+                results[i] = rejected(requests.get(i), "VALIDATION_FAILED", validationError.get());
             } else {
-                transaction.setStatus(TransactionStatus.PARTIAL_REFUND);
+                accepted.add(i);
             }
-            paymentRepository.save(transaction);
-            
-            log.info("Refund completed: {}", refund.getId());
-        } else {
-            refund.setStatus(RefundStatus.FAILED);
-            log.error("Refund failed: {}", refund.getId());
         }
-        
-        refund = refundRepository.save(refund);
-        
-        // Send webhook
-        webhookService.sendRefundWebhook(refund, transaction);
-        
-        return refund;
+
+        // Stage 1: allocate balances and record the refunds, keyed by request index
+        Map<Integer, Refund> created = accepted.isEmpty() ? Map.of() : inTransaction(Stage.REFUND_DB_INSERT, status ->
+            reserveRefunds(requests, accepted, results));
+
+        // Stages 2 and 3
+        Map<String, Refund> finalizedById = new HashMap<>();
+        try {
+            completeAll(created.values()).get(RESPONSE_WAIT.toMillis(), TimeUnit.MILLISECONDS)
+                .forEach(refund -> finalizedById.put(refund.getId(), refund));
+        } catch (TimeoutException e) {
+            log.info("Refund batch still pending after {}", RESPONSE_WAIT);
+        } catch (ExecutionException e) {
+            log.error("Failed to complete refund batch", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        created.forEach((index, refund) -> results[index] = RefundBatchItemResult.builder()
+            .transactionId(refund.getTransactionId())
+            .outcome(RefundBatchItemResult.Outcome.CREATED)
+            .refund(finalizedById.getOrDefault(refund.getId(), refund))
+            .build());
+
+        List<RefundBatchItemResult> resultList = Arrays.asList(results);
+        RefundBatchResponse response = RefundBatchResponse.builder()
+            .results(resultList)
+            .created(created.size())
+            .rejected(requests.size() - created.size())
+            .build();
+        log.info("Processed refund batch of {} items: {} created, {} rejected",
+            requests.size(), response.getCreated(), response.getRejected());
+        return response;
+    }
+
+    /**
+     * Bean-validate a request that did not come through a {@code @Valid} controller argument.
+     *
+     * @return the violations as one message, or empty if the request is valid
+     */
+    public Optional<String> validationError(RefundRequest request) {
+        Set<ConstraintViolation<RefundRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(violations.stream()
+            .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+            .sorted()
+            .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Stage 1 of a batch. The payment rows stay locked until commit, so the in-memory balance
+     * check cannot race with another refund; the locked entities are updated in place and
+     * flushed as batched, versioned UPDATEs. Rejected items get their result in {@code results}.
+     */
+    private Map<Integer, Refund> reserveRefunds(
+            List<RefundRequest> requests, List<Integer> accepted, RefundBatchItemResult[] results) {
+        Map<String, PaymentTransaction> transactions = new HashMap<>();
+        paymentRepository.findAllByIdForUpdate(accepted.stream()
+                .map(index -> requests.get(index).getTransactionId())
+                .collect(Collectors.toSet()))
+            .forEach(transaction -> transactions.put(transaction.getId(), transaction));
+
+        Map<Integer, Refund> pending = new LinkedHashMap<>();
+        for (int index : accepted) {
+            RefundRequest request = requests.get(index);
+            PaymentTransaction transaction = transactions.get(request.getTransactionId());
+            PaymentGatewayException rejection = transaction == null
+                ? new ResourceNotFoundException("PaymentTransaction", "id", request.getTransactionId())
+                : rejectionFor(transaction, request.getAmount());
+            if (rejection != null) {
+                metrics.recordRefundRejection(rejection.getErrorCode());
+                results[index] = rejected(request, rejection.getErrorCode(), rejection.getMessage());
+                continue;
+            }
+
+            // Held until the provider answers; the status changes only when the refund completes
+            transaction.setPendingRefundAmount(transaction.getPendingRefundAmount().add(request.getAmount()));
+
+            Refund refund = new Refund();
+            refund.setTransactionId(request.getTransactionId());
+            refund.setAmount(request.getAmount());
+            refund.setReason(request.getReason());
+            refund.setStatus(RefundStatus.PENDING);
+            pending.put(index, refund);
+        }
+
+        refundRepository.saveAll(pending.values());
+        pending.values().stream()
+            .map(Refund::getTransactionId)
+            .distinct()
+            .forEach(transactionId -> snapshotCache.putAfterCommit(transactions.get(transactionId)));
+        return pending;
+    }
+
+    /**
+     * Stages 2 and 3 of a batch: provider calls chained per payment in the given order, then
+     * one transaction for every refund whose outcome is known.
+     *
+     * @return the finalized refunds
+     */
+    private CompletableFuture<List<Refund>> completeAll(Collection<Refund> refunds) {
+        if (refunds.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        Map<String, PaymentTransaction> transactions = new HashMap<>();
+        paymentRepository.findAllById(refunds.stream().map(Refund::getTransactionId).collect(Collectors.toSet()))
+            .forEach(transaction -> transactions.put(transaction.getId(), transaction));
+
+        // Refund ID to whether the provider approved it; refunds with an unknown outcome stay out
+        Map<String, Boolean> outcomes = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<Void>> chains = new HashMap<>();
+        for (Refund refund : refunds) {
+            PaymentTransaction transaction = transactions.get(refund.getTransactionId());
+            CompletableFuture<Void> previous = chains.getOrDefault(
+                refund.getTransactionId(), CompletableFuture.completedFuture(null));
+            chains.put(refund.getTransactionId(), previous.thenCompose(ignored ->
+                providerClient.refund(refund, transaction).handle((result, error) -> {
+                    Boolean approved = providerOutcome(refund, result, error);
+                    if (approved != null) {
+                        outcomes.put(refund.getId(), approved);
+                    }
+                    return null;
+                })));
+        }
+        return CompletableFuture.allOf(chains.values().toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> finalizeRefunds(refunds, outcomes));
+    }
+
+    /**
+     * Submit a refund that was left PENDING, e.g. by a node that stopped between stages.
+     * Relies on the provider being idempotent on the refund ID.
+     */
+    public CompletableFuture<Optional<Refund>> resumeRefund(Refund refund) {
+        log.info("Resuming refund {}", refund.getId());
+        return complete(refund);
+    }
+
+    /**
+     * Stages 2 and 3. An unknown provider outcome leaves the refund PENDING for the reconciler;
+     * a refund the provider pool refused is failed, since the provider never saw it.
+     *
+     * @return the finalized refund, or empty if it is still PENDING
+     */
+    private CompletableFuture<Optional<Refund>> complete(Refund refund) {
+        PaymentTransaction transaction = loadTransaction(refund.getTransactionId());
+        return providerClient.refund(refund, transaction)
+            .handle((result, error) -> Optional.ofNullable(providerOutcome(refund, result, error))
+                .map(approved -> finalizeRefund(refund, approved)));
+    }
+
+    /**
+     * @return whether the provider approved the refund, or null if the outcome is unknown
+     */
+    private Boolean providerOutcome(Refund refund, ProviderResult result, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+            ? error.getCause() : error;
+        if (cause instanceof RejectedExecutionException) {
+            metrics.recordRefundRejection("PROVIDER_UNAVAILABLE");
+            return false;
+        } else if (cause != null) {
+            log.warn("Provider outcome unknown for refund {}, leaving it PENDING", refund.getId(), cause);
+            return null;
+        } else if (!result.approved()) {
+            metrics.recordRefundRejection("PROVIDER_DECLINED");
+        }
+        return result.approved();
+    }
+
+    /**
+     * Stage 3: record the provider's answer, moving the reserved amount to the refunded total
+     * on success and giving it back on failure.
+     */
+    private Refund finalizeRefund(Refund refund, boolean success) {
+        return inTransaction(Stage.REFUND_DB_UPDATE, status -> {
+            RefundStatus finalStatus = success ? RefundStatus.COMPLETED : RefundStatus.FAILED;
+            if (refundRepository.completePending(refund.getId(), finalStatus, LocalDateTime.now()) == 0) {
+                // Already finalized elsewhere (e.g. by the reconciler)
+                return refundRepository.findById(refund.getId()).orElse(refund);
+            }
+            if (success) {
+                paymentRepository.completeRefund(refund.getTransactionId(), refund.getAmount(), LocalDateTime.now());
+            } else {
+                paymentRepository.releaseRefund(refund.getTransactionId(), refund.getAmount(), LocalDateTime.now());
+            }
+            Refund completed = refundRepository.findById(refund.getId()).orElse(refund);
+
+            if (success) {
+                log.info("Refund completed: {}", completed.getId());
+            } else {
+                log.error("Refund failed: {}", completed.getId());
+            }
+
+            // Loaded after the balance updates so it reflects the new refunded amount and status
+            PaymentTransaction transaction = loadTransaction(refund.getTransactionId());
+            snapshotCache.putAfterCommit(transaction);
+            if (success) {
+                // A failed refund only gives its reservation back and leaves the status as it was
+                statusEventBus.publishAfterCommit(transaction);
+                volumeService.recordRefundAfterCommit(completed, transaction);
+            }
+
+            webhookService.enqueueRefundWebhook(completed, transaction);
+            return completed;
+        });
+    }
+
+    /**
+     * Stage 3 of a batch: {@link #finalizeRefund} for every refund in {@code outcomes}, in one
+     * transaction, with a single balance update per payment for the refunds that completed
+     * and another for those that failed.
+     */
+    private List<Refund> finalizeRefunds(Collection<Refund> refunds, Map<String, Boolean> outcomes) {
+        if (outcomes.isEmpty()) {
+            return List.of();
+        }
+        return inTransaction(Stage.REFUND_DB_UPDATE, status -> {
+            LocalDateTime now = LocalDateTime.now();
+            Map<String, BigDecimal> refunded = new HashMap<>();
+            Map<String, BigDecimal> released = new HashMap<>();
+            Set<String> finalized = new HashSet<>();
+            for (Refund refund : refunds) {
+                Boolean success = outcomes.get(refund.getId());
+                if (success == null) {
+                    continue;
+                }
+                RefundStatus finalStatus = success ? RefundStatus.COMPLETED : RefundStatus.FAILED;
+                // Refunds finalized elsewhere (e.g. by the reconciler) are left alone
+                if (refundRepository.completePending(refund.getId(), finalStatus, now) > 0) {
+                    finalized.add(refund.getId());
+                    (success ? refunded : released).merge(refund.getTransactionId(), refund.getAmount(), BigDecimal::add);
+                }
+            }
+            refunded.forEach((transactionId, amount) -> paymentRepository.completeRefund(transactionId, amount, now));
+            released.forEach((transactionId, amount) -> paymentRepository.releaseRefund(transactionId, amount, now));
+
+            List<Refund> completed = refundRepository.findAllById(outcomes.keySet());
+            Map<String, PaymentTransaction> transactions = new HashMap<>();
+            paymentRepository.findAllById(completed.stream().map(Refund::getTransactionId).collect(Collectors.toSet()))
+                .forEach(transaction -> transactions.put(transaction.getId(), transaction));
+            transactions.values().forEach(snapshotCache::putAfterCommit);
+
+            List<Refund> finalizedRefunds = new ArrayList<>(finalized.size());
+            for (Refund refund : completed) {
+                if (!finalized.contains(refund.getId())) {
+                    continue;
+                }
+                PaymentTransaction transaction = transactions.get(refund.getTransactionId());
+                if (refund.getStatus() == RefundStatus.COMPLETED) {
+                    log.info("Refund completed: {}", refund.getId());
+                    statusEventBus.publishAfterCommit(transaction);
+                    volumeService.recordRefundAfterCommit(refund, transaction);
+                } else {
+                    log.error("Refund failed: {}", refund.getId());
+                }
+                finalizedRefunds.add(refund);
+            }
+            webhookService.enqueueRefundWebhooks(finalizedRefunds, transactions);
+            return completed;
+        });
+    }
+
+    private <T> T inTransaction(Stage stage, TransactionCallback<T> work) {
+        return metrics.observe(stage, () -> transactionTemplate.execute(work));
+    }
+
+    private PaymentTransaction loadTransaction(String transactionId) {
+        return paymentRepository
+            .findById(transactionId)
+            .orElseThrow(() -> new ResourceNotFoundException("PaymentTransaction", "id", transactionId));
+    }
+
+    /**
+     * Work out why {@link PaymentRepository#reserveRefund} matched no row.
+     */
+    private PaymentGatewayException rejectionFor(RefundRequest request) {
+        PaymentTransaction transaction = paymentRepository.findById(request.getTransactionId()).orElse(null);
+        if (transaction == null) {
+            return new ResourceNotFoundException("PaymentTransaction", "id", request.getTransactionId());
+        }
+        PaymentGatewayException rejection = rejectionFor(transaction, request.getAmount());
+        // The balance freed up since the UPDATE; still report it as exceeded rather than retry
+        return rejection != null ? rejection : balanceExceeded(request.getAmount(), remainingAmount(transaction));
+    }
+
+    /**
+     * @return why {@code amount} cannot be refunded from {@code transaction}, or null if it can
+     */
+    private PaymentGatewayException rejectionFor(PaymentTransaction transaction, BigDecimal amount) {
+        if (transaction.getStatus() != TransactionStatus.SUCCESS &&
+            transaction.getStatus() != TransactionStatus.PARTIAL_REFUND) {
+            return new PaymentGatewayException(
+                "Transaction cannot be refunded. Current status: " + transaction.getStatus(),
+                HttpStatus.BAD_REQUEST,
+                "INVALID_TRANSACTION_STATUS"
+            );
+        }
+
+        BigDecimal remainingAmount = remainingAmount(transaction);
+        return amount.compareTo(remainingAmount) <= 0 ? null : balanceExceeded(amount, remainingAmount);
+    }
+
+    // Refunds still pending hold their amount until they complete or fail
+    private static BigDecimal remainingAmount(PaymentTransaction transaction) {
+        return transaction.getAmount()
+            .subtract(transaction.getRefundedAmount())
+            .subtract(transaction.getPendingRefundAmount());
+    }
+
+    private static PaymentGatewayException balanceExceeded(BigDecimal amount, BigDecimal remainingAmount) {
+        return new PaymentGatewayException(
+            String.format("Refund amount exceeds remaining amount. Requested: %s, Available: %s", 
+                amount, remainingAmount),
+            HttpStatus.BAD_REQUEST,
+            "REFUND_AMOUNT_EXCEEDS_BALANCE"
+        );
     }
 
-    private boolean processWithPaymentProvider(Refund refund) {
-        // Mock refund processing
-        return Math.random() < 0.95;
+    private static RefundBatchItemResult rejected(RefundRequest request, String errorCode, String message) {
+        return RefundBatchItemResult.builder()
+            .transactionId(request.getTransactionId())
+            .outcome(RefundBatchItemResult.Outcome.REJECTED)
+            .errorCode(errorCode)
+            .errorMessage(message)
+            .build();
     }
-}
\ No newline at end of file
+}
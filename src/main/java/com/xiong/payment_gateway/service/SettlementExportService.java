@@ -0,0 +1,101 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.dto.SettlementRow;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.export.SettlementFormat;
+import com.xiong.payment_gateway.export.SettlementWriter;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+import com.xiong.payment_gateway.repository.RefundRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a merchant's settlement file: every payment and then every refund created in a
+ * time window, in creation order.
+ *
+ * Rows are read as {@link SettlementRow} projections through JDBC cursors with a large fetch
+ * size and encoded onto the caller's stream as they arrive, so neither the persistence
+ * context nor any buffer grows with the size of the export.
+ */
+@Service
+@Slf4j
+public class SettlementExportService {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final PaymentRepository paymentRepository;
+    private final RefundRepository refundRepository;
+
+    public SettlementExportService(PaymentRepository paymentRepository, RefundRepository refundRepository) {
+        this.paymentRepository = paymentRepository;
+        this.refundRepository = refundRepository;
+    }
+
+    /**
+     * Check the arguments of {@link #export} up front, so that a caller streaming the result
+     * can still report a bad request before the first byte is written.
+     */
+    public void validate(String merchantId, LocalDateTime from, LocalDateTime to) {
+        if (merchantId == null || merchantId.isBlank()) {
+            throw new PaymentGatewayException("merchantId is required", HttpStatus.BAD_REQUEST, "INVALID_QUERY");
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new PaymentGatewayException(
+                "A settlement window needs from before to", HttpStatus.BAD_REQUEST, "INVALID_TIME_RANGE");
+        }
+    }
+
+    /**
+     * Export the settlement rows created in [from, to). The stream is flushed but not closed.
+     *
+     * @return number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long export(
+        String merchantId,
+        LocalDateTime from,
+        LocalDateTime to,
+        SettlementFormat format,
+        boolean gzip,
+        OutputStream out
+    ) throws IOException {
+        validate(merchantId, from, to);
+        long started = System.nanoTime();
+
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : null;
+        SettlementWriter writer = format.writerFor(compressed != null ? compressed : out);
+        long rows;
+        try (Stream<SettlementRow> payments = paymentRepository.streamSettlementRows(merchantId, from, to)) {
+            rows = writeAll(payments, writer);
+        }
+        try (Stream<SettlementRow> refunds = refundRepository.streamSettlementRows(merchantId, from, to)) {
+            rows += writeAll(refunds, writer);
+        }
+        writer.finish();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        out.flush();
+
+        log.info("Exported {} settlement rows of merchant {} for [{}, {}) as {} in {} ms",
+            rows, merchantId, from, to, format, (System.nanoTime() - started) / 1_000_000);
+        return rows;
+    }
+
+    private static long writeAll(Stream<SettlementRow> rows, SettlementWriter writer) throws IOException {
+        long count = 0;
+        for (Iterator<SettlementRow> it = rows.iterator(); it.hasNext(); count++) {
+            writer.write(it.next());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.models.WebhookEvent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the webhook outbox. Each poll claims batches of due events and starts delivering
+ * them over the non-blocking webhook client, without waiting for the answers, so a slow
+ * endpoint never holds a scheduler thread. At most {@value #MAX_IN_FLIGHT} deliveries
+ * are outstanding per node; a poll that finds them all taken claims nothing, and the next
+ * one picks up as they complete. Several gateway nodes can run this side by side.
+ */
+@Component
+@Slf4j
+public class WebhookDispatcher {
+    private static final int BATCH_SIZE = 100;
+    // Claimed but unfinished events per node; a single host is further capped by its bulkhead
+    private static final int MAX_IN_FLIGHT = 4 * BATCH_SIZE;
+
+    private final WebhookService webhookService;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public WebhookDispatcher(WebhookService webhookService) {
+        this.webhookService = webhookService;
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void dispatch() {
+        while (true) {
+            int capacity = Math.min(BATCH_SIZE, MAX_IN_FLIGHT - inFlight.get());
+            if (capacity <= 0) {
+                log.debug("Webhook dispatch deferred: {} deliveries in flight", inFlight.get());
+                return;
+            }
+            List<WebhookEvent> batch;
+            try {
+                batch = webhookService.claimDueEvents(capacity);
+            } catch (Exception e) {
+                log.error("Failed to claim webhook events", e);
+                return;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            log.debug("Dispatching {} webhook events", batch.size());
+
+            inFlight.addAndGet(batch.size());
+            for (WebhookEvent event : batch) {
+                deliver(event);
+            }
+            if (batch.size() < capacity) {
+                return;
+            }
+        }
+    }
+
+    private void deliver(WebhookEvent event) {
+        CompletableFuture<Void> delivery;
+        try {
+            delivery = webhookService.deliverWebhook(event);
+        } catch (RuntimeException e) {
+            // The claim lease expires and the event is picked up again
+            log.error("Failed to start webhook delivery {}", event.getId(), e);
+            delivery = CompletableFuture.failedFuture(e);
+        }
+        delivery.whenComplete((ignored, error) -> inFlight.decrementAndGet());
+    }
+}
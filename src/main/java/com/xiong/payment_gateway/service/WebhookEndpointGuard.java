@@ -0,0 +1,120 @@
+package com.xiong.payment_gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Isolates webhook endpoints from each other. Every destination host gets a bulkhead
+ * (bounded in-flight and queued calls) and a circuit breaker that opens after repeated
+ * failures. Calls refused by either fail with {@link EndpointUnavailableException}, which
+ * carries how long the caller should wait before trying that host again.
+ *
+ * Hosts come from merchant-supplied URLs, so state is kept for at most
+ * {@value #MAX_TRACKED_HOSTS} hosts and dropped after {@code IDLE_EVICTION} without calls;
+ * a host seen again starts with a closed breaker. For the same reason gauges are aggregated
+ * rather than tagged by host: {@code webhook.hosts} (hosts tracked),
+ * {@code webhook.circuit.open} (hosts whose breaker is open or half-open),
+ * {@code webhook.bulkhead.in_flight} and {@code webhook.bulkhead.queued}.
+ */
+@Component
+public class WebhookEndpointGuard {
+    private static final int MAX_CONCURRENT_PER_HOST = 32;
+    private static final int MAX_QUEUED_PER_HOST = 256;
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+    private static final Duration BULKHEAD_RETRY_DELAY = Duration.ofSeconds(5);
+    private static final Duration MIN_RETRY_DELAY = Duration.ofSeconds(1);
+    // Far longer than any delivery or open breaker, so only hosts with nothing pending go
+    private static final Duration IDLE_EVICTION = Duration.ofMinutes(10);
+    static final int MAX_TRACKED_HOSTS = 10_000;
+
+    private final PerHostLimiter limiter = new PerHostLimiter(
+        MAX_CONCURRENT_PER_HOST, MAX_QUEUED_PER_HOST, IDLE_EVICTION, MAX_TRACKED_HOSTS);
+    private final Cache<String, CircuitBreaker> breakers = Caffeine.newBuilder()
+        .expireAfterAccess(IDLE_EVICTION)
+        .maximumSize(MAX_TRACKED_HOSTS)
+        .build();
+
+    public WebhookEndpointGuard(MeterRegistry meterRegistry) {
+        Gauge.builder("webhook.hosts", this, WebhookEndpointGuard::trackedHosts)
+            .description("Webhook destination hosts with breaker and bulkhead state")
+            .register(meterRegistry);
+        Gauge.builder("webhook.circuit.open", this, WebhookEndpointGuard::openCircuits)
+            .description("Webhook hosts whose circuit breaker is open or half-open")
+            .register(meterRegistry);
+        Gauge.builder("webhook.bulkhead.in_flight", limiter, PerHostLimiter::inFlight)
+            .register(meterRegistry);
+        Gauge.builder("webhook.bulkhead.queued", limiter, PerHostLimiter::queued)
+            .register(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> execute(String host, Supplier<CompletableFuture<T>> call) {
+        CircuitBreaker breaker = breakers.get(host, this::newBreaker);
+        if (!breaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(
+                new EndpointUnavailableException("Circuit open for host " + host, retryDelay(breaker)));
+        }
+
+        return limiter.submit(host, call).handle((value, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            if (cause instanceof RejectedExecutionException) {
+                breaker.releasePermission();
+                throw new EndpointUnavailableException("Bulkhead full for host " + host, BULKHEAD_RETRY_DELAY);
+            }
+            if (cause != null) {
+                breaker.onFailure();
+                throw cause instanceof RuntimeException re ? re : new CompletionException(cause);
+            }
+            breaker.onSuccess();
+            return value;
+        });
+    }
+
+    private CircuitBreaker newBreaker(String host) {
+        return new CircuitBreaker("webhook host " + host, FAILURE_THRESHOLD, OPEN_DURATION);
+    }
+
+    long trackedHosts() {
+        breakers.cleanUp();
+        return breakers.estimatedSize();
+    }
+
+    private long openCircuits() {
+        return breakers.asMap().values().stream()
+            .filter(breaker -> breaker.state() != CircuitBreaker.State.CLOSED)
+            .count();
+    }
+
+    // Never zero: a half-open breaker with its trial in flight still needs a short pause
+    private static Duration retryDelay(CircuitBreaker breaker) {
+        Duration remaining = breaker.remainingOpenTime();
+        return remaining.compareTo(MIN_RETRY_DELAY) < 0 ? MIN_RETRY_DELAY : remaining;
+    }
+
+    /**
+     * Raised when a host is refused by its circuit breaker or bulkhead.
+     * The webhook should be parked until {@link #getRetryAfter()} has passed.
+     */
+    public static class EndpointUnavailableException extends RuntimeException {
+        private final Duration retryAfter;
+
+        public EndpointUnavailableException(String message, Duration retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.xiong.payment_gateway.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code webhook_events} range-partitioned by month on {@code created_at}, so the outbox
+ * only ever holds the retention window: expired months are dropped (or detached for archiving)
+ * as whole tables instead of being deleted row by row, which leaves nothing for vacuum to do.
+ *
+ * Hibernate creates the table as a plain one, and the first run converts it in place: the
+ * existing table becomes the partition for everything up to the end of the current month and
+ * later ages out like any other. Every run then makes sure the coming months have partitions,
+ * and that the partial indexes exist: pending events by {@code next_retry}, for the dispatcher,
+ * and failed events by {@code created_at}. Delivered events, nearly all rows, are in neither.
+ *
+ * Runs once before the dispatcher and the transports start, then hourly. Several nodes
+ * coordinate through an advisory lock. Does nothing unless the database is PostgreSQL.
+ */
+@Component
+@Slf4j
+public class WebhookPartitionMaintainer implements SmartInitializingSingleton {
+    private static final String TABLE = "webhook_events";
+    private static final String LEGACY_PARTITION = "webhook_events_legacy";
+    private static final String PENDING_INDEX = "idx_webhook_events_pending_next_retry";
+    private static final String FAILED_INDEX = "idx_webhook_events_failed_created_at";
+    // The full (status, next_retry) index from before the partial ones
+    private static final String SUPERSEDED_INDEX = "idx_webhook_events_status_next_retry";
+    // Maintenance is retried within the hour, while a stalled outbox would stall payments
+    private static final String LOCK_TIMEOUT = "5s";
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyyMM");
+    // Upper bound in pg_get_expr(relpartbound), e.g. FOR VALUES FROM (MINVALUE) TO ('2026-11-01 00:00:00')
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WebhookPartitionProperties properties;
+    // Null until the database has been identified
+    private volatile Boolean postgres;
+
+    public WebhookPartitionMaintainer(
+        JdbcTemplate jdbcTemplate,
+        TransactionTemplate transactionTemplate,
+        WebhookPartitionProperties properties
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Hibernate has updated the schema by now
+        maintain();
+    }
+
+    @Scheduled(cron = "0 7 * * * *")
+    public void maintain() {
+        try {
+            if (postgres == null) {
+                postgres = "PostgreSQL".equals(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+                if (!postgres) {
+                    log.info("Not maintaining {} partitions: the database is not PostgreSQL", TABLE);
+                }
+            }
+            if (postgres) {
+                transactionTemplate.executeWithoutResult(status -> maintain(LocalDate.now()));
+            }
+        } catch (Exception e) {
+            log.error("Failed to maintain {} partitions", TABLE, e);
+        }
+    }
+
+    private void maintain(LocalDate today) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '" + LOCK_TIMEOUT + "'");
+        Boolean locked = jdbcTemplate.queryForObject(
+            "SELECT pg_try_advisory_xact_lock(hashtext('" + TABLE + " maintenance'))", Boolean.class);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("Another node is maintaining {} partitions", TABLE);
+            return;
+        }
+        String kind = jdbcTemplate.queryForObject(
+            "SELECT (SELECT relkind::text FROM pg_class WHERE oid = to_regclass('" + TABLE + "'))", String.class);
+        if (kind == null) {
+            log.warn("Table {} does not exist; skipping partition maintenance", TABLE);
+            return;
+        }
+
+        jdbcTemplate.execute("DROP INDEX IF EXISTS " + SUPERSEDED_INDEX);
+        LocalDateTime currentMonth = today.withDayOfMonth(1).atStartOfDay();
+        if (properties.isEnabled() && "r".equals(kind)) {
+            convert(currentMonth.plusMonths(1));
+        }
+        // On a partitioned table these cascade to every partition, present and future
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + PENDING_INDEX
+            + " ON " + TABLE + " (next_retry) WHERE status = 'PENDING'");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + FAILED_INDEX
+            + " ON " + TABLE + " (created_at) WHERE status = 'FAILED'");
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        List<Partition> partitions = partitions();
+        createAhead(partitions, currentMonth);
+        removeExpired(partitions, currentMonth);
+    }
+
+    /**
+     * Swap the plain table for a partitioned one, keeping it as the partition of every row up
+     * to {@code upperBound}. Validating the bound and indexing the kept table scan it once.
+     */
+    private void convert(LocalDateTime upperBound) {
+        log.warn("Converting {} into a partitioned table; existing rows stay in {}", TABLE, LEGACY_PARTITION);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+        // Index names are schema-wide; free them for the partitioned table
+        for (String index : List.of(TABLE + "_pkey", PENDING_INDEX, FAILED_INDEX)) {
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS " + index
+                + " RENAME TO " + index.replace(TABLE, LEGACY_PARTITION));
+        }
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION
+            + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (created_at)");
+        // The primary key of a partitioned table has to contain the partition key
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, created_at)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION
+            + " FOR VALUES FROM (MINVALUE) TO ('" + upperBound.format(BOUND) + "')");
+    }
+
+    private record Partition(String name, LocalDateTime upperBound) {
+    }
+
+    private List<Partition> partitions() {
+        return jdbcTemplate.query("""
+            SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+            FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = to_regclass('%s')
+            """.formatted(TABLE),
+            (rs, rowNum) -> new Partition(rs.getString(1), upperBound(rs.getString(2))));
+    }
+
+    // Null for a DEFAULT partition or one bounded by MAXVALUE
+    private static LocalDateTime upperBound(String bound) {
+        Matcher matcher = UPPER_BOUND.matcher(bound);
+        return matcher.find() ? Timestamp.valueOf(matcher.group(1)).toLocalDateTime() : null;
+    }
+
+    /**
+     * Create monthly partitions from the end of the last one (or the current month, if that is
+     * later) through {@code premadeMonths} after the current one. Inserts past the last partition
+     * would fail, and with them the payments writing to the outbox.
+     */
+    private void createAhead(List<Partition> partitions, LocalDateTime currentMonth) {
+        LocalDateTime from = partitions.stream()
+            .map(Partition::upperBound)
+            .filter(Objects::nonNull)
+            .filter(currentMonth::isBefore)
+            .max(LocalDateTime::compareTo)
+            .orElse(currentMonth);
+        LocalDateTime end = currentMonth.plusMonths(properties.getPremadeMonths() + 1L);
+        while (from.isBefore(end)) {
+            LocalDateTime to = from.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+            String partition = TABLE + from.format(PARTITION_SUFFIX);
+            jdbcTemplate.execute("CREATE TABLE " + partition + " PARTITION OF " + TABLE
+                + " FOR VALUES FROM ('" + from.format(BOUND) + "') TO ('" + to.format(BOUND) + "')");
+            log.info("Created partition {} for webhook events from {} to {}", partition, from, to);
+            from = to;
+        }
+    }
+
+    /**
+     * Drop or detach the partitions that end before the retention window. A partition that still
+     * holds pending events, e.g. after a long dispatcher outage, is kept until they are settled.
+     */
+    private void removeExpired(List<Partition> partitions, LocalDateTime currentMonth) {
+        if (properties.getRetentionMonths() <= 0) {
+            return;
+        }
+        LocalDateTime cutoff = currentMonth.minusMonths(properties.getRetentionMonths());
+        for (Partition partition : partitions) {
+            if (partition.upperBound() == null || partition.upperBound().isAfter(cutoff)) {
+                continue;
+            }
+            String table = quote(partition.name());
+            // Answered from the pending partial index
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + table + " WHERE status = 'PENDING')", Boolean.class))) {
+                log.warn("Keeping expired partition {}: it still has pending webhook events", partition.name());
+                continue;
+            }
+            switch (properties.getRetentionAction()) {
+                case DROP -> jdbcTemplate.execute("DROP TABLE " + table);
+                case DETACH -> jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + table);
+            }
+            log.info("Removed expired partition {} ({}) holding webhook events before {}",
+                partition.name(), properties.getRetentionAction(), partition.upperBound());
+        }
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,28 @@
+package com.xiong.payment_gateway.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * {@code payment.webhooks.partitioning.*} settings for {@link WebhookPartitionMaintainer}.
+ */
+@Data
+@ConfigurationProperties(prefix = "payment.webhooks.partitioning")
+public class WebhookPartitionProperties {
+    public enum RetentionAction {
+        DROP,
+        // Leaves the expired month as a standalone table, e.g. to be dumped to cold storage
+        DETACH
+    }
+
+    // Convert webhook_events into monthly partitions; the partial indexes are kept either way
+    private boolean enabled = true;
+
+    // Months of partitions created ahead of the current one
+    private int premadeMonths = 3;
+
+    // Whole months kept before the current one; 0 keeps every partition
+    private int retentionMonths = 3;
+
+    private RetentionAction retentionAction = RetentionAction.DROP;
+}
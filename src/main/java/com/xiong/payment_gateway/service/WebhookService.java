@@ -1,95 +1,280 @@
 package com.xiong.payment_gateway.service;
 
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
 import com.xiong.payment_gateway.models.PaymentTransaction;
 import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.RefundStatus;
 import com.xiong.payment_gateway.models.WebhookEvent;
 import com.xiong.payment_gateway.models.WebhookStatus;
 import com.xiong.payment_gateway.repository.WebhookRepository;
 
 import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.scheduling.annotation.Async;
+import io.micrometer.observation.Observation;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @Slf4j
 public class WebhookService {
+    static final int MAX_ATTEMPTS = 8;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    // How long a claimed event stays invisible to other dispatchers before it is considered abandoned
+    private static final Duration CLAIM_LEASE = Duration.ofSeconds(60);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
     private final WebhookRepository webhookRepository;
-    private final RestTemplate restTemplate;
+    private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private final WebhookEndpointGuard endpointGuard;
+    private final GatewayMetrics metrics;
 
     public WebhookService(
         WebhookRepository webhookRepository,
-        RestTemplate restTemplate,
-        ObjectMapper objectMapper
+        HttpClient webhookHttpClient,
+        ObjectMapper objectMapper,
+        WebhookEndpointGuard endpointGuard,
+        GatewayMetrics metrics
     ) {
         this.webhookRepository = webhookRepository;
-        this.restTemplate = restTemplate;
+        this.httpClient = webhookHttpClient;
         this.objectMapper = objectMapper;
+        this.endpointGuard = endpointGuard;
+        this.metrics = metrics;
     }
 
-    @Async
-    public void sendWebhook(PaymentTransaction transaction, String webhookUrl) {
-        try {
-            if (webhookUrl == null || webhookUrl.trim().isEmpty()) {
-                log.warn("No webhook URL provided for transaction {}", transaction.getId());
-                return;
+    /**
+     * Write a payment webhook to the outbox. Joins the caller's transaction so the
+     * event is committed (or rolled back) together with the payment itself;
+     * delivery is left to {@link WebhookDispatcher}.
+     */
+    @Transactional
+    public void enqueueWebhook(PaymentTransaction transaction, String webhookUrl) {
+        metrics.observe(GatewayMetrics.Stage.WEBHOOK_ENQUEUE, () -> {
+            WebhookEvent event = buildPaymentEvent(transaction, webhookUrl);
+            return event != null ? webhookRepository.save(event) : null;
+        });
+    }
+
+    /**
+     * Grouped form of {@link #enqueueWebhook}: all events go to the outbox in one batched insert,
+     * each to the transaction's own {@code webhookUrl}.
+     */
+    @Transactional
+    public void enqueueWebhooks(List<PaymentTransaction> transactions) {
+        metrics.observe(GatewayMetrics.Stage.WEBHOOK_ENQUEUE, () -> {
+            List<WebhookEvent> events = new ArrayList<>(transactions.size());
+            for (PaymentTransaction transaction : transactions) {
+                WebhookEvent event = buildPaymentEvent(transaction, transaction.getWebhookUrl());
+                if (event != null) {
+                    events.add(event);
+                }
             }
+            return webhookRepository.saveAll(events);
+        });
+    }
 
-            // Ensure URI is absolute by adding protocol if missing
-            webhookUrl = webhookUrl.trim();
-            if (!webhookUrl.startsWith("http://") && !webhookUrl.startsWith("https://")) {
-                webhookUrl = "http://" + webhookUrl;
+    /**
+     * Write a refund webhook ({@code refund.completed} or {@code refund.failed}) to the outbox,
+     * addressed to the payment's {@code webhookUrl}. Like {@link #enqueueWebhook}, it joins the
+     * caller's transaction so the event commits together with the refund's final status.
+     */
+    @Transactional
+    public void enqueueRefundWebhook(Refund refund, PaymentTransaction transaction) {
+        enqueueRefundWebhooks(List.of(refund), Map.of(transaction.getId(), transaction));
+    }
+
+    /**
+     * Grouped form of {@link #enqueueRefundWebhook}: all events go to the outbox in one batched
+     * insert. {@code transactions} maps each refund's {@code transactionId} to its payment.
+     */
+    @Transactional
+    public void enqueueRefundWebhooks(List<Refund> refunds, Map<String, PaymentTransaction> transactions) {
+        metrics.observe(GatewayMetrics.Stage.WEBHOOK_ENQUEUE, () -> {
+            List<WebhookEvent> events = new ArrayList<>(refunds.size());
+            for (Refund refund : refunds) {
+                WebhookEvent event = buildRefundEvent(refund, transactions.get(refund.getTransactionId()));
+                if (event != null) {
+                    events.add(event);
+                }
             }
+            return webhookRepository.saveAll(events);
+        });
+    }
 
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("event_type", "payment.completed");
-            payload.put("transaction_id", transaction.getId());
-            payload.put("status", transaction.getStatus());
-            payload.put("amount", transaction.getAmount());
-            payload.put("currency", transaction.getCurrency());
-
-            WebhookEvent event = new WebhookEvent();
-            event.setTransactionId(transaction.getId());
-            event.setEventType("payment.completed");
-            event.setPayload(objectMapper.writeValueAsString(payload));
-            event.setWebhookUrl(webhookUrl);
-            event.setStatus(WebhookStatus.PENDING);
-            
-            event = webhookRepository.save(event);
-            
-            // Attempt delivery
-            deliverWebhook(event);
-        } catch (Exception e) {
-            log.error("Error creating webhook", e);
+    // Package-private for WebhookPayloadBenchmark
+    WebhookEvent buildPaymentEvent(PaymentTransaction transaction, String webhookUrl) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("event_type", "payment.completed");
+        payload.put("transaction_id", transaction.getId());
+        payload.put("status", transaction.getStatus());
+        payload.put("amount", transaction.getAmount());
+        payload.put("currency", transaction.getCurrency());
+        return newEvent(transaction.getId(), "payment.completed", payload, webhookUrl);
+    }
+
+    WebhookEvent buildRefundEvent(Refund refund, PaymentTransaction transaction) {
+        String eventType = refund.getStatus() == RefundStatus.COMPLETED ? "refund.completed" : "refund.failed";
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("event_type", eventType);
+        payload.put("refund_id", refund.getId());
+        payload.put("transaction_id", refund.getTransactionId());
+        payload.put("status", refund.getStatus());
+        payload.put("amount", refund.getAmount());
+        payload.put("currency", transaction.getCurrency());
+        return newEvent(refund.getTransactionId(), eventType, payload, transaction.getWebhookUrl());
+    }
+
+    private WebhookEvent newEvent(String transactionId, String eventType, Map<String, Object> payload,
+                                  String webhookUrl) {
+        if (webhookUrl == null || webhookUrl.trim().isEmpty()) {
+            log.warn("No webhook URL provided for transaction {}", transactionId);
+            return null;
+        }
+
+        // Ensure URI is absolute by adding protocol if missing
+        webhookUrl = webhookUrl.trim();
+        if (!webhookUrl.startsWith("http://") && !webhookUrl.startsWith("https://")) {
+            webhookUrl = "http://" + webhookUrl;
         }
+
+        WebhookEvent event = new WebhookEvent();
+        event.setTransactionId(transactionId);
+        event.setEventType(eventType);
+        event.setPayload(toJson(payload));
+        event.setWebhookUrl(webhookUrl);
+        event.setStatus(WebhookStatus.PENDING);
+        event.setNextRetry(LocalDateTime.now());
+        return event;
     }
 
-    @Async
-    public void sendRefundWebhook(Refund refund, PaymentTransaction transaction) {
-        // Similar implementation for refund webhooks
-        log.info("Sending refund webhook for refund: {}", refund.getId());
+    /**
+     * Claim up to {@code batchSize} due events. Rows are locked with SKIP LOCKED so
+     * concurrent dispatchers never claim the same event, and the lease pushed into
+     * {@code nextRetry} keeps them hidden until delivery finishes or the lease expires.
+     */
+    @Transactional
+    public List<WebhookEvent> claimDueEvents(int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        List<WebhookEvent> events = webhookRepository.claimDueEvents(now, batchSize);
+        for (WebhookEvent event : events) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextRetry(now.plus(CLAIM_LEASE));
+        }
+        return webhookRepository.saveAll(events);
     }
 
-    private void deliverWebhook(WebhookEvent event) {
+    /**
+     * Deliver a claimed event without blocking the calling thread. The returned future
+     * completes once the outcome (delivered or rescheduled) has been recorded.
+     */
+    public CompletableFuture<Void> deliverWebhook(WebhookEvent event) {
+        URI uri;
         try {
-            restTemplate.postForEntity(
-                event.getWebhookUrl(),
-                event.getPayload(),
-                String.class
-            );
-            
-            event.setStatus(WebhookStatus.DELIVERED);
-            webhookRepository.save(event);
-            log.info("Webhook delivered successfully: {}", event.getId());
-        } catch (Exception e) {
-            event.setAttempts(event.getAttempts() + 1);
+            uri = URI.create(event.getWebhookUrl());
+        } catch (IllegalArgumentException e) {
+            markFailed(event, e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(event.getPayload() != null ? event.getPayload() : ""))
+            .build();
+
+        return endpointGuard.execute(uri.getHost(), () -> {
+                // Only the HTTP exchange itself, not time spent waiting for the bulkhead
+                Observation delivery = metrics.observation(GatewayMetrics.Stage.WEBHOOK_DELIVERY).start();
+                return httpClient
+                    .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> {
+                        if (response.statusCode() / 100 != 2) {
+                            throw new IllegalStateException("Webhook endpoint returned HTTP " + response.statusCode());
+                        }
+                        return response;
+                    })
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            delivery.error(error);
+                        }
+                        delivery.stop();
+                    });
+            })
+            .handle((response, error) -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                if (cause instanceof WebhookEndpointGuard.EndpointUnavailableException unavailable) {
+                    metrics.recordWebhookAttempt("unavailable");
+                    park(event, unavailable);
+                } else if (cause != null) {
+                    metrics.recordWebhookAttempt("failed");
+                    markFailed(event, cause);
+                } else {
+                    metrics.recordWebhookAttempt("delivered");
+                    markDelivered(event);
+                }
+                return null;
+            });
+    }
+
+    /**
+     * Put an event back without counting the claim as a delivery attempt,
+     * because the endpoint was never called.
+     */
+    void park(WebhookEvent event, WebhookEndpointGuard.EndpointUnavailableException reason) {
+        event.setAttempts(Math.max(event.getAttempts() - 1, 0));
+        event.setNextRetry(LocalDateTime.now().plus(reason.getRetryAfter()));
+        webhookRepository.save(event);
+        log.debug("Webhook parked until {}: {} ({})", event.getNextRetry(), event.getId(), reason.getMessage());
+    }
+
+    void markDelivered(WebhookEvent event) {
+        event.setStatus(WebhookStatus.DELIVERED);
+        event.setNextRetry(null);
+        webhookRepository.save(event);
+        log.info("Webhook delivered successfully: {}", event.getId());
+    }
+
+    void markFailed(WebhookEvent event, Throwable cause) {
+        if (event.getAttempts() >= MAX_ATTEMPTS) {
             event.setStatus(WebhookStatus.FAILED);
-            webhookRepository.save(event);
-            log.error("Webhook delivery failed: {}", event.getId(), e);
+            event.setNextRetry(null);
+            log.error("Webhook delivery failed permanently after {} attempts: {}",
+                event.getAttempts(), event.getId(), cause);
+        } else {
+            event.setNextRetry(LocalDateTime.now().plus(backoff(event.getAttempts())));
+            log.warn("Webhook delivery failed (attempt {}), retrying at {}: {}",
+                event.getAttempts(), event.getNextRetry(), event.getId());
+        }
+        webhookRepository.save(event);
+    }
+
+    private static Duration backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        Duration delay = BASE_BACKOFF.multipliedBy(1L << exponent);
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private String toJson(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize webhook payload", e);
         }
     }
 }
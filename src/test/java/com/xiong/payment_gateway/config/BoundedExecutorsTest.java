@@ -0,0 +1,62 @@
+package com.xiong.payment_gateway.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class BoundedExecutorsTest {
+    // Stands in for virtual threads, which need Java 21: one new thread per task
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void bulkheadKeepsThePoolLimits() throws InterruptedException {
+        BoundedExecutors.VirtualThreadBulkhead bulkhead = new BoundedExecutors.VirtualThreadBulkhead(threads, 2, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> started = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            int task = i;
+            bulkhead.execute(() -> {
+                started.add(task);
+                awaitQuietly(release);
+            });
+        }
+        await().until(() -> bulkhead.activeCount() == 2);
+        for (int i = 2; i < 5; i++) {
+            int task = i;
+            bulkhead.execute(() -> started.add(task));
+            await().until(() -> bulkhead.queuedCount() == task - 1);
+        }
+
+        assertThatThrownBy(() -> bulkhead.execute(() -> { })).isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        bulkhead.shutdown();
+        assertThat(bulkhead.awaitTermination(Duration.ofSeconds(5))).isTrue();
+        assertThat(started).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+        assertThatThrownBy(() -> bulkhead.execute(() -> { })).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.xiong.payment_gateway.export;
+
+import com.xiong.payment_gateway.dto.SettlementRow;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarSettlementWriterTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    @Test
+    void roundTripsRowsAcrossGroups() throws IOException {
+        List<SettlementRow> rows = new ArrayList<>();
+        for (int i = 0; i < ColumnarSettlementWriter.GROUP_SIZE + 5; i++) {
+            boolean refund = i % 3 == 0;
+            rows.add(new SettlementRow(
+                refund ? SettlementRow.REFUND : SettlementRow.PAYMENT,
+                "id-" + i,
+                "txn-" + i,
+                "merchant-" + (i % 2),
+                refund ? "COMPLETED" : "SUCCESS",
+                new BigDecimal(i).movePointLeft(2).negate(),
+                i % 5 == 0 ? null : "USD",
+                START.plusNanos(i * 1_500_000L),
+                i % 7 == 0 ? null : START.minusSeconds(i)));
+        }
+
+        assertThat(decode(encode(rows))).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(rows);
+    }
+
+    @Test
+    void emptyExportIsHeaderAndTrailerOnly() throws IOException {
+        assertThat(decode(encode(List.of()))).isEmpty();
+    }
+
+    private static byte[] encode(List<SettlementRow> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SettlementWriter writer = SettlementFormat.COLUMNAR.writerFor(out);
+        for (SettlementRow row : rows) {
+            writer.write(row);
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    // Reader for the layout documented on ColumnarSettlementWriter
+    private static List<SettlementRow> decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        assertThat(in.readNBytes(4)).isEqualTo(ColumnarSettlementWriter.MAGIC);
+        assertThat(in.readUnsignedByte()).isEqualTo(ColumnarSettlementWriter.VERSION);
+        int columns = in.readUnsignedByte();
+        List<ColumnarSettlementWriter.ColumnType> types = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int c = 0; c < columns; c++) {
+            names.add(in.readUTF());
+            types.add(ColumnarSettlementWriter.ColumnType.values()[in.readUnsignedByte()]);
+        }
+        assertThat(names).containsExactly(CsvSettlementWriter.HEADER.split(","));
+
+        List<SettlementRow> rows = new ArrayList<>();
+        int groupRows;
+        while ((groupRows = (int) readVarint(in)) > 0) {
+            Object[][] values = new Object[columns][];
+            for (int c = 0; c < columns; c++) {
+                values[c] = readChunk(in, types.get(c), groupRows);
+            }
+            for (int r = 0; r < groupRows; r++) {
+                rows.add(new SettlementRow((String) values[0][r], (String) values[1][r], (String) values[2][r],
+                    (String) values[3][r], (String) values[4][r], (BigDecimal) values[5][r], (String) values[6][r],
+                    (LocalDateTime) values[7][r], (LocalDateTime) values[8][r]));
+            }
+        }
+        assertThat(in.readLong()).isEqualTo(rows.size());
+        assertThat(in.read()).isEqualTo(-1);
+        return rows;
+    }
+
+    private static Object[] readChunk(DataInputStream in, ColumnarSettlementWriter.ColumnType type, int rows)
+            throws IOException {
+        Object[] values = new Object[rows];
+        switch (type) {
+            case DICTIONARY -> {
+                String[] entries = new String[(int) readVarint(in)];
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = new String(in.readNBytes((int) readVarint(in)), StandardCharsets.UTF_8);
+                }
+                for (int r = 0; r < rows; r++) {
+                    long index = readVarint(in);
+                    values[r] = index == 0 ? null : entries[(int) index - 1];
+                }
+            }
+            case STRING -> {
+                for (int r = 0; r < rows; r++) {
+                    long length = readVarint(in);
+                    values[r] = length == 0 ? null : new String(in.readNBytes((int) length - 1), StandardCharsets.UTF_8);
+                }
+            }
+            case DECIMAL -> {
+                for (int r = 0; r < rows; r++) {
+                    long scale = readVarint(in);
+                    if (scale != 0) {
+                        BigInteger unscaled = new BigInteger(in.readNBytes((int) readVarint(in)));
+                        values[r] = new BigDecimal(unscaled, (int) scale - 1);
+                    }
+                }
+            }
+            case TIMESTAMP -> {
+                long previous = 0;
+                for (int r = 0; r < rows; r++) {
+                    long encoded = readVarint(in);
+                    if (encoded != 0) {
+                        long zigzag = encoded - 1;
+                        long micros = previous + ((zigzag >>> 1) ^ -(zigzag & 1));
+                        values[r] = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                            (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+                        previous = micros;
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
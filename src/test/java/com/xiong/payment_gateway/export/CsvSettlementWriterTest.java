@@ -0,0 +1,48 @@
+package com.xiong.payment_gateway.export;
+
+import com.xiong.payment_gateway.dto.SettlementRow;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvSettlementWriterTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final SettlementWriter writer = SettlementFormat.CSV.writerFor(out);
+
+    @Test
+    void writesHeaderAndOneLinePerRow() throws IOException {
+        writer.write(new SettlementRow(SettlementRow.PAYMENT, "txn-1", "txn-1", "merchant-1", "SUCCESS",
+            new BigDecimal("1E+2"), "USD", LocalDateTime.of(2026, 3, 1, 12, 0, 5, 123_000_000), null));
+        writer.finish();
+
+        assertThat(csv()).isEqualTo(CsvSettlementWriter.HEADER + "\r\n"
+            + "PAYMENT,txn-1,txn-1,merchant-1,SUCCESS,100,USD,2026-03-01T12:00:05.123,\r\n");
+    }
+
+    @Test
+    void quotesFieldsThatNeedIt() throws IOException {
+        writer.write(new SettlementRow(SettlementRow.REFUND, "ref-1", "txn-1", "acme, \"inc\"\nwest", "COMPLETED",
+            new BigDecimal("4.50"), "EUR", null, null));
+        writer.finish();
+
+        assertThat(csv()).endsWith("REFUND,ref-1,txn-1,\"acme, \"\"inc\"\"\nwest\",COMPLETED,4.50,EUR,,\r\n");
+    }
+
+    @Test
+    void emptyExportStillHasHeader() throws IOException {
+        writer.finish();
+
+        assertThat(csv()).isEqualTo(CsvSettlementWriter.HEADER + "\r\n");
+    }
+
+    private String csv() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
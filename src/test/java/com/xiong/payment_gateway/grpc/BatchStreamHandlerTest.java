@@ -0,0 +1,76 @@
+package com.xiong.payment_gateway.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchStreamHandlerTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    @SuppressWarnings("unchecked")
+    private final ServerCallStreamObserver<String> responses = mock(ServerCallStreamObserver.class);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void processesRequestsWithTheSameKeyOneAtATimeInArrivalOrder() {
+        when(responses.isReady()).thenReturn(true);
+        doAnswer(invocation -> written.add(invocation.getArgument(0))).when(responses).onNext(any());
+        // Requests are "key:sequence"; each key must run strictly one after another
+        Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        List<String> overlaps = new CopyOnWriteArrayList<>();
+
+        BatchStreamHandler<String, String> handler = new BatchStreamHandler<>("refund", responses, request -> {
+            String key = request.split(":")[0];
+            if (running.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet() > 1) {
+                overlaps.add(request);
+            }
+            sleep();
+            processed.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(Integer.parseInt(request.split(":")[1]));
+            running.get(key).decrementAndGet();
+            return request;
+        }, (request, errorCode, message) -> errorCode, request -> request.split(":")[0], executor, 64);
+
+        for (int sequence = 0; sequence < 10; sequence++) {
+            for (String key : List.of("a", "b", "c")) {
+                handler.onNext(key + ":" + sequence);
+            }
+        }
+        handler.onCompleted();
+
+        verify(responses, timeout(5_000)).onCompleted();
+        assertThat(written).hasSize(30);
+        assertThat(overlaps).isEmpty();
+        List<Integer> inOrder = List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(processed).containsOnlyKeys("a", "b", "c").allSatisfy((key, sequences) ->
+            assertThat(sequences).isEqualTo(inOrder));
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.xiong.payment_gateway.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7GeneratorTest {
+    private static final long NOW = 1_760_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+    private final UuidV7Generator generator = new UuidV7Generator(clock::get);
+
+    @Test
+    void idsWithinOneMillisecondAreStrictlyIncreasing() {
+        List<String> ids = generate(100);
+
+        assertThat(ids).isSortedAccordingTo(String::compareTo).doesNotHaveDuplicates();
+        assertThat(ids).allSatisfy(id -> {
+            UUID uuid = UUID.fromString(id);
+            assertThat(uuid.version()).isEqualTo(7);
+            assertThat(uuid.variant()).isEqualTo(2);
+            assertThat(millis(id)).isEqualTo(NOW);
+        });
+        assertThat(sequence(ids.get(0))).isZero();
+        assertThat(sequence(ids.get(99))).isEqualTo(99);
+    }
+
+    @Test
+    void sequenceOverflowBorrowsTheNextMillisecond() {
+        List<String> ids = generate(4097);
+
+        assertThat(ids).isSortedAccordingTo(String::compareTo);
+        assertThat(millis(ids.get(4095))).isEqualTo(NOW);
+        assertThat(sequence(ids.get(4095))).isEqualTo(4095);
+        assertThat(millis(ids.get(4096))).isEqualTo(NOW + 1);
+        assertThat(sequence(ids.get(4096))).isZero();
+
+        // The real clock catching up continues after the borrowed millisecond
+        clock.set(NOW + 1);
+        String next = generator.nextId();
+        assertThat(next).isGreaterThan(ids.get(4096));
+        assertThat(sequence(next)).isEqualTo(1);
+    }
+
+    @Test
+    void clockGoingBackwardsKeepsCountingFromTheLastId() {
+        String before = generator.nextId();
+
+        clock.set(NOW - 5_000);
+        String after = generator.nextId();
+
+        assertThat(after).isGreaterThan(before);
+        assertThat(millis(after)).isEqualTo(NOW);
+        assertThat(sequence(after)).isEqualTo(1);
+
+        clock.set(NOW + 10);
+        assertThat(millis(generator.nextId())).isEqualTo(NOW + 10);
+    }
+
+    private List<String> generate(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(generator.nextId());
+        }
+        return ids;
+    }
+
+    private static long millis(String id) {
+        return UUID.fromString(id).getMostSignificantBits() >>> 16;
+    }
+
+    private static long sequence(String id) {
+        return UUID.fromString(id).getMostSignificantBits() & 0xFFF;
+    }
+}
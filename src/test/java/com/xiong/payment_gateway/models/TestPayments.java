@@ -0,0 +1,22 @@
+package com.xiong.payment_gateway.models;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Unsaved payments for tests: merchant-1, USD and a unique idempotency key.
+ */
+public final class TestPayments {
+    private TestPayments() {
+    }
+
+    public static PaymentTransaction payment(String amount, TransactionStatus status) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setMerchantId("merchant-1");
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setCurrency("USD");
+        transaction.setIdempotencyKey("key-" + UUID.randomUUID());
+        transaction.setStatus(status);
+        return transaction;
+    }
+}
@@ -0,0 +1,60 @@
+package com.xiong.payment_gateway.provider;
+
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentProviderClientTest {
+
+    @Test
+    void unansweredCallEndsWithAnUnknownOutcomeAfterTheCallTimeout() throws InterruptedException {
+        CountDownLatch answer = new CountDownLatch(1);
+        PaymentProvider hanging = new PaymentProvider() {
+            @Override
+            public ProviderResult authorize(PaymentTransaction transaction) {
+                return awaitAnswer(answer);
+            }
+
+            @Override
+            public ProviderResult refund(Refund refund, PaymentTransaction transaction) {
+                return awaitAnswer(answer);
+            }
+        };
+        PaymentProviderProperties properties = new PaymentProviderProperties();
+        properties.setCallTimeout(Duration.ofMillis(100));
+        PaymentProviderClient client = new PaymentProviderClient(hanging, properties, new BoundedExecutors(new StandardEnvironment()),
+            new GatewayMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry()));
+
+        CompletableFuture<ProviderResult> call = client.authorize(new PaymentTransaction());
+
+        // Not a RejectedExecutionException: the provider may have seen the call, so it stays pending
+        assertThatThrownBy(call::join)
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(TimeoutException.class);
+        answer.countDown();
+        client.shutdown();
+    }
+
+    private static ProviderResult awaitAnswer(CountDownLatch answer) {
+        try {
+            answer.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return ProviderResult.approve();
+    }
+}
@@ -0,0 +1,64 @@
+package com.xiong.payment_gateway.provider;
+
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimulatedPaymentProviderTest {
+
+    @Test
+    void seededWorkloadReplaysWithTheSameOutcomes() {
+        List<String> first = runWorkload();
+        List<String> second = runWorkload();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first).contains("approved", "declined", "error");
+    }
+
+    /**
+     * Authorizes and refunds 200 payments on a fresh provider. IDs are generated anew on every
+     * run, as they are by the database.
+     */
+    private static List<String> runWorkload() {
+        PaymentProviderProperties properties = new PaymentProviderProperties();
+        properties.getSimulated().setSeed(42L);
+        properties.getSimulated().setAuthorizeDeclineRate(0.3);
+        properties.getSimulated().setRefundDeclineRate(0.3);
+        properties.getSimulated().setErrorRate(0.1);
+        SimulatedPaymentProvider provider = new SimulatedPaymentProvider(properties);
+
+        List<String> outcomes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setId(UUID.randomUUID().toString());
+            transaction.setIdempotencyKey("key-" + i);
+            transaction.setAmount(new BigDecimal("100.00"));
+            outcomes.add(outcome(() -> provider.authorize(transaction)));
+
+            Refund refund = new Refund();
+            refund.setId(UUID.randomUUID().toString());
+            refund.setTransactionId(transaction.getId());
+            refund.setAmount(new BigDecimal("25.00"));
+            refund.setReason("requested_by_customer");
+            outcomes.add(outcome(() -> provider.refund(refund, transaction)));
+        }
+        return outcomes;
+    }
+
+    private static String outcome(Supplier<ProviderResult> call) {
+        try {
+            return call.get().approved() ? "approved" : "declined";
+        } catch (ProviderException e) {
+            return "error";
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.xiong.payment_gateway.repository;
+
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TestPayments;
+import com.xiong.payment_gateway.models.TransactionStatus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// Each update commits on its own, as when called from RefundService's stages
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentRepositoryTest {
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void pendingRefundsCountAgainstTheBalance() {
+        String id = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.SUCCESS)).getId();
+
+        assertThat(paymentRepository.reserveRefund(id, new BigDecimal("7.00"), LocalDateTime.now())).isOne();
+        // Only 3.00 left while the first refund is with the provider
+        assertThat(paymentRepository.reserveRefund(id, new BigDecimal("4.00"), LocalDateTime.now())).isZero();
+        assertThat(paymentRepository.reserveRefund(id, new BigDecimal("3.00"), LocalDateTime.now())).isOne();
+
+        PaymentTransaction reserved = paymentRepository.findById(id).orElseThrow();
+        assertThat(reserved.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(reserved.getPendingRefundAmount()).isEqualByComparingTo("10.00");
+        assertThat(reserved.getRefundedAmount()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void releaseFreesTheBalanceAndCompleteMovesTheStatus() {
+        String id = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.SUCCESS)).getId();
+        paymentRepository.reserveRefund(id, new BigDecimal("10.00"), LocalDateTime.now());
+
+        paymentRepository.releaseRefund(id, new BigDecimal("10.00"), LocalDateTime.now());
+        assertThat(paymentRepository.reserveRefund(id, new BigDecimal("4.00"), LocalDateTime.now())).isOne();
+        paymentRepository.completeRefund(id, new BigDecimal("4.00"), LocalDateTime.now());
+
+        PaymentTransaction partial = paymentRepository.findById(id).orElseThrow();
+        assertThat(partial.getStatus()).isEqualTo(TransactionStatus.PARTIAL_REFUND);
+        assertThat(partial.getRefundedAmount()).isEqualByComparingTo("4.00");
+        assertThat(partial.getPendingRefundAmount()).isEqualByComparingTo("0");
+
+        paymentRepository.reserveRefund(id, new BigDecimal("6.00"), LocalDateTime.now());
+        paymentRepository.completeRefund(id, new BigDecimal("6.00"), LocalDateTime.now());
+        PaymentTransaction refunded = paymentRepository.findById(id).orElseThrow();
+        assertThat(refunded.getStatus()).isEqualTo(TransactionStatus.REFUNDED);
+        assertThat(refunded.getRefundedAmount()).isEqualByComparingTo("10.00");
+        assertThat(refunded.getVersion()).isEqualTo(partial.getVersion() + 2);
+    }
+
+    @Test
+    void onlySettledPaymentsCanBeRefunded() {
+        String id = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.FAILED)).getId();
+
+        assertThat(paymentRepository.reserveRefund(id, new BigDecimal("1.00"), LocalDateTime.now())).isZero();
+    }
+}
@@ -0,0 +1,34 @@
+package com.xiong.payment_gateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class IdempotencyNearCacheTest {
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IdempotencyNearCache nearCache =
+        new IdempotencyNearCache(redisTemplate, mock(RedisMessageListenerContainer.class), meterRegistry);
+
+    @Test
+    void publishesHitsMissesAndSize() {
+        nearCache.get("order-1");
+        nearCache.put("order-1", "txn-1");
+        nearCache.get("order-1");
+        nearCache.get("order-1");
+
+        assertThat(gets("hit")).isEqualTo(2);
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.size").tag("cache", "idempotency.near").gauge().value()).isEqualTo(1);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "idempotency.near").tag("result", result)
+            .functionCounter().count();
+    }
+}
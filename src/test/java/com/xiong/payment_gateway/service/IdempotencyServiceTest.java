@@ -0,0 +1,177 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TestPayments;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.repository.IdempotencyReservationRepository;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// Reservations commit in their own transactions, as in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceTest {
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private IdempotencyReservationRepository reservationRepository;
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void reservesInRedisAndRemembersCompletedKeys() {
+        IdempotencyService service = newService();
+        redisReturns(null);
+        assertThat(service.reserve("key-1").isOwner()).isTrue();
+
+        redisReturns("txn-1");
+        IdempotencyService.Reservation duplicate = service.reserve("key-1");
+        assertThat(duplicate.isOwner()).isFalse();
+        assertThat(duplicate.existingTransactionId()).isEqualTo("txn-1");
+
+        // Answered by the near cache from now on
+        service.reserve("key-1");
+        verifyRedisReserves(2);
+        assertThat(checks("redis")).isEqualTo(2);
+        assertThat(reservationRepository.count()).isZero();
+    }
+
+    @Test
+    void waitsForAnInFlightOwnerToPublishItsTransaction() {
+        IdempotencyService service = newService();
+        redisReturns(IdempotencyService.PENDING_MARKER);
+        when(valueOperations.get("idempotency:key-1")).thenReturn(IdempotencyService.PENDING_MARKER, "txn-1");
+
+        IdempotencyService.Reservation reservation = service.reserve("key-1");
+
+        assertThat(reservation.isOwner()).isFalse();
+        assertThat(reservation.existingTransactionId()).isEqualTo("txn-1");
+        verifyRedisReserves(1);
+    }
+
+    @Test
+    void releaseOnlyDeletesKeysThatAreStillPending() {
+        IdempotencyService service = newService();
+
+        service.releaseAll(List.of("key-1", "key-2"));
+
+        verify(redisTemplate).execute(IdempotencyService.RELEASE_ALL_SCRIPT,
+            List.of("idempotency:key-1", "idempotency:key-2"), IdempotencyService.PENDING_MARKER);
+        verify(redisTemplate, never()).delete(anyCollection());
+    }
+
+    @Test
+    void fallsBackToDatabaseWhileRedisIsDown() {
+        IdempotencyService service = newService();
+        redisDown();
+        PaymentTransaction done = TestPayments.payment("10.00", TransactionStatus.SUCCESS);
+        done.setIdempotencyKey("key-done");
+        paymentRepository.save(done);
+
+        assertThat(service.reserve("key-new").isOwner()).isTrue();
+        assertThat(reservationRepository.existsById("key-new")).isTrue();
+        IdempotencyService.Reservation completed = service.reserve("key-done");
+        assertThat(completed.isOwner()).isFalse();
+        assertThat(completed.existingTransactionId()).isNotNull();
+        // The breaker opened after three failures; later keys skip Redis entirely
+        service.reserve("key-other");
+        verifyRedisReserves(3);
+        assertThat(checks("database")).isEqualTo(3);
+
+        // Released keys can be reserved again by a retry
+        service.release("key-new");
+        assertThat(reservationRepository.existsById("key-new")).isFalse();
+        assertThat(service.reserve("key-new").isOwner()).isTrue();
+    }
+
+    @Test
+    void keysCompletedDuringAnOutageAreWrittenBackOnceRedisRecovers() {
+        IdempotencyService service = newService();
+        redisDown();
+        assertThat(service.reserve("key-1").isOwner()).isTrue();
+        doThrow(new RedisConnectionFailureException("Connection refused"))
+            .when(valueOperations).set("idempotency:key-1", "txn-1", 24, TimeUnit.HOURS);
+
+        service.markAsProcessed("key-1", "txn-1");
+
+        assertThat(reservationRepository.existsById("key-1")).isFalse();
+        assertThat(refillPending()).isEqualTo(1);
+
+        // Two failures so far, below the breaker's threshold
+        doNothing().when(valueOperations).set("idempotency:key-1", "txn-1", 24, TimeUnit.HOURS);
+        service.refillRedis();
+
+        verify(valueOperations, times(2)).set("idempotency:key-1", "txn-1", 24, TimeUnit.HOURS);
+        assertThat(refillPending()).isZero();
+    }
+
+    private IdempotencyService newService() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        IdempotencyNearCache nearCache =
+            new IdempotencyNearCache(redisTemplate, mock(RedisMessageListenerContainer.class), new SimpleMeterRegistry());
+        return new IdempotencyService(redisTemplate, nearCache, paymentRepository, reservationRepository,
+            meterRegistry);
+    }
+
+    private void redisReturns(String existing) {
+        doReturn(existing).when(redisTemplate).execute(eq(IdempotencyService.RESERVE_SCRIPT), anyList(), any(Object[].class));
+    }
+
+    private void redisDown() {
+        doThrow(new RedisConnectionFailureException("Connection refused"))
+            .when(redisTemplate).execute(eq(IdempotencyService.RESERVE_SCRIPT), anyList(), any(Object[].class));
+    }
+
+    private void verifyRedisReserves(int times) {
+        verify(redisTemplate, times(times)).execute(eq(IdempotencyService.RESERVE_SCRIPT), anyList(), any(Object[].class));
+    }
+
+    private double refillPending() {
+        return meterRegistry.get("idempotency.refill.pending").gauge().value();
+    }
+
+    private double checks(String tier) {
+        return meterRegistry.get("idempotency.checks").tag("tier", tier).counter().count();
+    }
+}
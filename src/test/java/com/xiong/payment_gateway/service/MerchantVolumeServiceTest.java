@@ -0,0 +1,119 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.dto.MerchantVolume;
+import com.xiong.payment_gateway.dto.MerchantVolumeReport;
+import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.TestPayments;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.repository.MerchantVolumeRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// Flushes commit their own transactions, as the scheduler does
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MerchantVolumeServiceTest {
+    @Autowired
+    private MerchantVolumeRepository volumeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate flushJdbcTemplate;
+    private MerchantVolumeService volumeService;
+
+    @BeforeEach
+    void setUp() {
+        flushJdbcTemplate = spy(jdbcTemplate);
+        volumeService = new MerchantVolumeService(volumeRepository, flushJdbcTemplate,
+            new TransactionTemplate(transactionManager));
+    }
+
+    @AfterEach
+    void tearDown() {
+        volumeRepository.deleteAll();
+    }
+
+    @Test
+    void flushInsertsNewDaysThenAddsToThem() {
+        volumeService.recordPaymentsAfterCommit(List.of(
+            TestPayments.payment("10.00", TransactionStatus.SUCCESS),
+            TestPayments.payment("2.50", TransactionStatus.SUCCESS),
+            TestPayments.payment("99.00", TransactionStatus.FAILED)));
+        volumeService.flush();
+
+        volumeService.recordPaymentsAfterCommit(List.of(TestPayments.payment("0.005", TransactionStatus.SUCCESS)));
+        volumeService.recordRefundAfterCommit(refund("4.00"), TestPayments.payment("10.00", TransactionStatus.SUCCESS));
+        volumeService.flush();
+        // Nothing new: no statements
+        volumeService.flush();
+
+        // UPDATE then INSERT for the new day, then a single UPDATE
+        verify(flushJdbcTemplate, times(3)).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+
+        MerchantVolume today = today();
+        assertThat(today.getPaymentCount()).isEqualTo(3);
+        // 0.005 rounds half up, as the numeric column would store it
+        assertThat(today.getGrossAmount()).isEqualByComparingTo("12.51");
+        assertThat(today.getFailedCount()).isEqualTo(1);
+        assertThat(today.getRefundCount()).isEqualTo(1);
+        assertThat(today.getRefundedAmount()).isEqualByComparingTo("4.00");
+        assertThat(today.getNetAmount()).isEqualByComparingTo("8.51");
+    }
+
+    @Test
+    void failedFlushKeepsDeltasForTheNext() {
+        doThrow(new QueryTimeoutException("database unavailable")).doCallRealMethod()
+            .when(flushJdbcTemplate).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+
+        volumeService.recordPaymentsAfterCommit(List.of(TestPayments.payment("10.00", TransactionStatus.SUCCESS)));
+        volumeService.flush();
+        assertThat(volumeRepository.count()).isZero();
+
+        volumeService.recordPaymentsAfterCommit(List.of(TestPayments.payment("5.00", TransactionStatus.SUCCESS)));
+        volumeService.flush();
+
+        assertThat(today().getPaymentCount()).isEqualTo(2);
+        assertThat(today().getGrossAmount()).isEqualByComparingTo("15.00");
+    }
+
+    private MerchantVolume today() {
+        MerchantVolumeReport report = volumeService.getVolume("merchant-1", LocalDate.now(), LocalDate.now());
+        assertThat(report.getDaily()).hasSize(1);
+        return report.getDaily().get(0);
+    }
+
+    private static Refund refund(String amount) {
+        Refund refund = new Refund();
+        refund.setAmount(new BigDecimal(amount));
+        return refund;
+    }
+}
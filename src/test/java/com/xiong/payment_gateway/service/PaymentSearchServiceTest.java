@@ -0,0 +1,116 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.dto.PaymentPage;
+import com.xiong.payment_gateway.dto.PaymentSummary;
+import com.xiong.payment_gateway.exception.PaymentGatewayException;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TestPayments;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class PaymentSearchServiceTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private PaymentSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new PaymentSearchService(paymentRepository);
+    }
+
+    @Test
+    void pagesFollowEachOtherWithoutGapsOrRepeats() {
+        List<String> expected = new ArrayList<>();
+        // Pairs share a createdAt, so the ID breaks the tie across page boundaries
+        for (int i = 0; i < 7; i++) {
+            expected.add(savePaymentCreatedAt("merchant-1", TransactionStatus.SUCCESS, DAY.plusHours(i / 2)));
+        }
+        savePaymentCreatedAt("merchant-2", TransactionStatus.SUCCESS, DAY);
+
+        List<PaymentSummary> listed = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PaymentPage page = searchService.listPayments("merchant-1", null, null, null, cursor, 3);
+            listed.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(listed).extracting(PaymentSummary::getTransactionId).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(listed).isSortedAccordingTo(PaymentSearchServiceTest::compareKeys);
+    }
+
+    @Test
+    void rowsInsertedBeforeTheCursorDoNotShiftLaterPages() {
+        for (int i = 0; i < 4; i++) {
+            savePaymentCreatedAt("merchant-1", TransactionStatus.SUCCESS, DAY.plusHours(i));
+        }
+        PaymentPage first = searchService.listPayments("merchant-1", null, null, null, null, 2);
+
+        savePaymentCreatedAt("merchant-1", TransactionStatus.SUCCESS, DAY.minusHours(1));
+        PaymentPage second = searchService.listPayments("merchant-1", null, null, null, first.getNextCursor(), 2);
+
+        assertThat(second.getItems()).extracting(PaymentSummary::getCreatedAt)
+            .containsExactly(DAY.plusHours(2), DAY.plusHours(3));
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void filtersByStatusAndTimeRange() {
+        savePaymentCreatedAt("merchant-1", TransactionStatus.SUCCESS, DAY.minusDays(1));
+        String inRange = savePaymentCreatedAt("merchant-1", TransactionStatus.SUCCESS, DAY);
+        savePaymentCreatedAt("merchant-1", TransactionStatus.FAILED, DAY);
+        savePaymentCreatedAt("merchant-1", TransactionStatus.SUCCESS, DAY.plusDays(1));
+
+        PaymentPage page = searchService.listPayments("merchant-1", TransactionStatus.SUCCESS,
+            DAY, DAY.plusDays(1), null, 10);
+
+        assertThat(page.getItems()).extracting(PaymentSummary::getTransactionId).containsExactly(inRange);
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThatThrownBy(() -> searchService.listPayments("merchant-1", null, null, null, "not-a-cursor", 10))
+            .isInstanceOfSatisfying(PaymentGatewayException.class,
+                e -> assertThat(e.getErrorCode()).isEqualTo("INVALID_CURSOR"));
+    }
+
+    private static int compareKeys(PaymentSummary a, PaymentSummary b) {
+        int byTime = a.getCreatedAt().compareTo(b.getCreatedAt());
+        return byTime != 0 ? byTime : a.getTransactionId().compareTo(b.getTransactionId());
+    }
+
+    private String savePaymentCreatedAt(String merchantId, TransactionStatus status, LocalDateTime createdAt) {
+        PaymentTransaction transaction = TestPayments.payment("10.00", status);
+        transaction.setMerchantId(merchantId);
+        String id = paymentRepository.saveAndFlush(transaction).getId();
+        // createdAt is set on insert and never updated through JPA
+        jdbcTemplate.update("UPDATE payment_transactions SET created_at = ? WHERE id = ?", Timestamp.valueOf(createdAt), id);
+        return id;
+    }
+}
@@ -0,0 +1,194 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.dto.ApiResponse;
+import com.xiong.payment_gateway.dto.PaymentBatchItemResult;
+import com.xiong.payment_gateway.dto.PaymentBatchResponse;
+import com.xiong.payment_gateway.dto.PaymentRequest;
+import com.xiong.payment_gateway.dto.PaymentResponse;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.provider.PaymentProvider;
+import com.xiong.payment_gateway.provider.PaymentProviderClient;
+import com.xiong.payment_gateway.provider.PaymentProviderProperties;
+import com.xiong.payment_gateway.provider.ProviderResult;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// Each stage commits on its own, as in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentServiceTest {
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final WebhookService webhookService = mock(WebhookService.class);
+    private final IdempotencyService idempotencyService = mock(IdempotencyService.class);
+    private final PaymentStatusEventBus statusEventBus = mock(PaymentStatusEventBus.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Function<PaymentTransaction, ProviderResult> providerAnswer = transaction -> ProviderResult.approve();
+    private PaymentService paymentService;
+
+    @BeforeEach
+    void setUp() {
+        PaymentProvider provider = new PaymentProvider() {
+            @Override
+            public ProviderResult authorize(PaymentTransaction transaction) {
+                return providerAnswer.apply(transaction);
+            }
+
+            @Override
+            public ProviderResult refund(Refund refund, PaymentTransaction transaction) {
+                return ProviderResult.approve();
+            }
+        };
+        when(idempotencyService.reserve(anyString())).thenReturn(IdempotencyService.Reservation.owned());
+        GatewayMetrics metrics = new GatewayMetrics(ObservationRegistry.NOOP, meterRegistry);
+        paymentService = new PaymentService(paymentRepository, idempotencyService, webhookService,
+            mock(PaymentSnapshotCache.class), statusEventBus,
+            new PaymentProviderClient(provider, new PaymentProviderProperties(),
+                new BoundedExecutors(new StandardEnvironment()), metrics),
+            new TransactionTemplate(transactionManager), Validation.buildDefaultValidatorFactory().getValidator(),
+            mock(MerchantVolumeService.class), metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void callsProviderOutsideAnyTransaction() {
+        providerAnswer = transaction -> {
+            assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+            // Stage 1 has committed: the payment is visible as PROCESSING
+            assertThat(paymentRepository.findById(transaction.getId()).orElseThrow().getStatus())
+                .isEqualTo(TransactionStatus.PROCESSING);
+            return ProviderResult.approve();
+        };
+
+        ApiResponse<PaymentResponse> response = paymentService.processPayment(request("key-1"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getData().getStatus()).isEqualTo("SUCCESS");
+        assertThat(paymentRepository.findById(response.getData().getTransactionId()).orElseThrow().getStatus())
+            .isEqualTo(TransactionStatus.SUCCESS);
+        verify(webhookService).enqueueWebhooks(argThatHasSize(1));
+        assertThat(outcomes()).isEqualTo(1);
+    }
+
+    @Test
+    void paymentFinalizedElsewhereGetsNoSecondSideEffects() {
+        // The reconciler records an outcome while this node's provider call is still running
+        providerAnswer = transaction -> {
+            PaymentTransaction current = paymentRepository.findById(transaction.getId()).orElseThrow();
+            current.setStatus(TransactionStatus.FAILED);
+            paymentRepository.save(current);
+            return ProviderResult.approve();
+        };
+
+        ApiResponse<PaymentResponse> response = paymentService.processPayment(request("key-2"));
+
+        // The outcome recorded first stands and is what the caller gets
+        assertThat(response.getData().getStatus()).isEqualTo("FAILED");
+        verify(webhookService).enqueueWebhooks(argThatHasSize(0));
+        // Only the PROCESSING event from stage 1
+        verify(statusEventBus, times(1)).publishAfterCommit(any());
+        assertThat(outcomes()).isZero();
+    }
+
+    @Test
+    void batchReportsEveryItemInRequestOrder() {
+        String earlier = paymentService.processPayment(request("key-earlier")).getData().getTransactionId();
+        // key-earlier was completed by an earlier request
+        when(idempotencyService.reserveAll(anyCollection())).thenAnswer(invocation -> {
+            Map<String, IdempotencyService.Reservation> reservations = new LinkedHashMap<>();
+            invocation.<Collection<String>>getArgument(0).forEach(key -> reservations.put(key,
+                key.equals("key-earlier") ? IdempotencyService.Reservation.existing(earlier)
+                    : IdempotencyService.Reservation.owned()));
+            return reservations;
+        });
+        providerAnswer = transaction -> transaction.getIdempotencyKey().equals("key-declined")
+            ? ProviderResult.decline("card declined") : ProviderResult.approve();
+        PaymentRequest invalid = request("key-invalid");
+        invalid.setAmount(new BigDecimal("-1.00"));
+
+        PaymentBatchResponse response = paymentService.processPaymentsBatch(List.of(
+            request("key-a"), invalid, request("key-a"), request("key-earlier"), request("key-declined")));
+
+        List<PaymentBatchItemResult> results = response.getResults();
+        assertThat(results).extracting(PaymentBatchItemResult::getOutcome).containsExactly(
+            PaymentBatchItemResult.Outcome.CREATED, PaymentBatchItemResult.Outcome.REJECTED,
+            PaymentBatchItemResult.Outcome.DUPLICATE, PaymentBatchItemResult.Outcome.DUPLICATE,
+            PaymentBatchItemResult.Outcome.CREATED);
+        assertThat(results.get(1).getErrorCode()).isEqualTo("VALIDATION_FAILED");
+        // A key repeated within the batch resolves to its first occurrence
+        assertThat(results.get(2).getPayment().getTransactionId()).isEqualTo(results.get(0).getPayment().getTransactionId());
+        assertThat(results.get(3).getPayment().getTransactionId()).isEqualTo(earlier);
+        assertThat(results.get(0).getPayment().getStatus()).isEqualTo("SUCCESS");
+        assertThat(results.get(4).getPayment().getStatus()).isEqualTo("FAILED");
+        assertThat(List.of(response.getCreated(), response.getDuplicates(), response.getRejected()))
+            .containsExactly(2, 2, 1);
+        // One payment per distinct new key
+        assertThat(paymentRepository.count()).isEqualTo(3);
+    }
+
+    private double outcomes() {
+        return meterRegistry.find("payment.outcomes").counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private static List<PaymentTransaction> argThatHasSize(int size) {
+        return argThat(list -> list.size() == size);
+    }
+
+    private static PaymentRequest request(String idempotencyKey) {
+        PaymentRequest request = new PaymentRequest();
+        request.setMerchantId("merchant-1");
+        request.setAmount(new BigDecimal("25.00"));
+        request.setCurrency("USD");
+        request.setIdempotencyKey(idempotencyKey);
+        request.setPaymentMethod("card");
+        request.setWebhookUrl("https://merchant.example.com/webhooks");
+        return request;
+    }
+}
@@ -0,0 +1,41 @@
+package com.xiong.payment_gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PaymentSnapshotCacheTest {
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final PaymentSnapshotCache cache = new PaymentSnapshotCache(
+        redisTemplate, new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry());
+
+    @Test
+    void failedPutKeepsVersionGuardAndShortensTtl() {
+        doThrow(new IllegalStateException("Redis timeout"))
+            .when(redisTemplate).execute(eq(PaymentSnapshotCache.PUT_IF_NEWER_SCRIPT), anyList(), any(Object[].class));
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId("txn-1");
+        transaction.setVersion(3L);
+
+        cache.put(transaction);
+
+        // Deleting would let a reader holding version 2 re-insert it for the full TTL
+        verify(redisTemplate, never()).delete(anyString());
+        verify(redisTemplate).expire("payment:snapshot:txn-1", Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,110 @@
+package com.xiong.payment_gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.TransactionStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class PaymentStatusEventBusTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PaymentStatusEventBus bus = newBus();
+    // Holds the slow listener until the test lets it go
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bus.shutdown();
+    }
+
+    @Test
+    void deliversInOrderAndClosesOnTerminalStatus() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        bus.subscribeToTransaction("txn-1", event -> received.add(event.getStatus() + "@" + event.getVersion()));
+
+        bus.publishAfterCommit(transaction("txn-1", TransactionStatus.PROCESSING, 0));
+        // Stale version, dropped
+        bus.publishAfterCommit(transaction("txn-1", TransactionStatus.PROCESSING, 0));
+        bus.publishAfterCommit(transaction("txn-1", TransactionStatus.SUCCESS, 1));
+        bus.publishAfterCommit(transaction("txn-1", TransactionStatus.REFUNDED, 2));
+        bus.publishAfterCommit(transaction("txn-1", TransactionStatus.REFUNDED, 3));
+
+        await().until(() -> watchers() == 0);
+        assertThat(received).containsExactly("PROCESSING@0", "SUCCESS@1", "REFUNDED@2");
+    }
+
+    @Test
+    void slowWatcherNeitherBlocksPublisherNorOthers() {
+        List<Long> fast = new CopyOnWriteArrayList<>();
+        bus.subscribeToMerchant("merchant-1", event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        bus.subscribeToMerchant("merchant-1", event -> fast.add(event.getVersion()));
+
+        // Returns although the first listener is stuck on its first event
+        for (int version = 0; version <= PaymentStatusEventBus.MAX_PENDING_EVENTS + 1; version++) {
+            bus.publishAfterCommit(transaction("txn-" + version, TransactionStatus.SUCCESS, version));
+        }
+
+        await().until(() -> fast.size() == PaymentStatusEventBus.MAX_PENDING_EVENTS + 2);
+        // The slow watcher fell too far behind and was dropped
+        assertThat(watchers()).isEqualTo(1);
+    }
+
+    @Test
+    void failingListenerIsUnsubscribed() {
+        bus.subscribeToMerchant("merchant-1", event -> {
+            throw new IllegalStateException("client went away");
+        });
+
+        bus.publishAfterCommit(transaction("txn-1", TransactionStatus.SUCCESS, 0));
+
+        await().until(() -> watchers() == 0);
+    }
+
+    private double watchers() {
+        return meterRegistry.get("payment.status.watchers").gauge().value();
+    }
+
+    // Redis is down, so events go straight to this node's watchers
+    @SuppressWarnings("unchecked")
+    private PaymentStatusEventBus newBus() {
+        RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+        doThrow(new IllegalStateException("Redis unavailable")).when(redisTemplate).convertAndSend(anyString(), anyString());
+        return new PaymentStatusEventBus(redisTemplate, new ObjectMapper().findAndRegisterModules(),
+            mock(RedisMessageListenerContainer.class), new BoundedExecutors(new StandardEnvironment()), meterRegistry);
+    }
+
+    private static PaymentTransaction transaction(String id, TransactionStatus status, long version) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(id);
+        transaction.setMerchantId("merchant-1");
+        transaction.setStatus(status);
+        transaction.setVersion(version);
+        transaction.setAmount(BigDecimal.TEN);
+        transaction.setCurrency("USD");
+        return transaction;
+    }
+}
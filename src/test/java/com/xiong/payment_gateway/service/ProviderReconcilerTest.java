@@ -0,0 +1,139 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.RefundStatus;
+import com.xiong.payment_gateway.models.TestPayments;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.provider.PaymentProvider;
+import com.xiong.payment_gateway.provider.PaymentProviderClient;
+import com.xiong.payment_gateway.provider.PaymentProviderProperties;
+import com.xiong.payment_gateway.provider.ProviderResult;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+import com.xiong.payment_gateway.repository.RefundRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// No test-managed transaction: the reconciler runs outside one and every statement must commit
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProviderReconcilerTest {
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final WebhookService webhookService = mock(WebhookService.class);
+    private final GatewayMetrics metrics = new GatewayMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+    private ProviderReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        PaymentProvider approveAll = new PaymentProvider() {
+            @Override
+            public ProviderResult authorize(PaymentTransaction transaction) {
+                return ProviderResult.approve();
+            }
+
+            @Override
+            public ProviderResult refund(Refund refund, PaymentTransaction transaction) {
+                return ProviderResult.approve();
+            }
+        };
+        PaymentProviderProperties providerProperties = new PaymentProviderProperties();
+        PaymentProviderClient providerClient = new PaymentProviderClient(approveAll, providerProperties,
+            new BoundedExecutors(new StandardEnvironment()), metrics);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        PaymentService paymentService = new PaymentService(paymentRepository, mock(IdempotencyService.class),
+            webhookService, mock(PaymentSnapshotCache.class), mock(PaymentStatusEventBus.class), providerClient,
+            transactionTemplate, mock(Validator.class), mock(MerchantVolumeService.class), metrics);
+        RefundService refundService = new RefundService(refundRepository, paymentRepository, webhookService,
+            mock(PaymentSnapshotCache.class), mock(PaymentStatusEventBus.class), providerClient,
+            transactionTemplate, mock(Validator.class), mock(MerchantVolumeService.class), metrics);
+        reconciler = new ProviderReconciler(paymentRepository, refundRepository, paymentService, refundService,
+            providerProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refundRepository.deleteAll();
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void finalizesStaleProcessingPayment() {
+        PaymentTransaction stale = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.PROCESSING));
+        backdate("payment_transactions", stale.getId());
+        PaymentTransaction recent = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.PROCESSING));
+
+        reconciler.reconcile();
+
+        assertThat(paymentRepository.findById(stale.getId()).orElseThrow().getStatus())
+            .isEqualTo(TransactionStatus.SUCCESS);
+        // Still within the grace period, so possibly in flight elsewhere
+        assertThat(paymentRepository.findById(recent.getId()).orElseThrow().getStatus())
+            .isEqualTo(TransactionStatus.PROCESSING);
+        verify(webhookService).enqueueWebhooks(any());
+    }
+
+    @Test
+    void finalizesStalePendingRefund() {
+        PaymentTransaction payment = TestPayments.payment("10.00", TransactionStatus.SUCCESS);
+        payment.setPendingRefundAmount(new BigDecimal("4.00"));
+        payment = paymentRepository.save(payment);
+        Refund refund = new Refund();
+        refund.setTransactionId(payment.getId());
+        refund.setAmount(new BigDecimal("4.00"));
+        refund.setStatus(RefundStatus.PENDING);
+        refund = refundRepository.save(refund);
+        backdate("refunds", refund.getId());
+
+        reconciler.reconcile();
+
+        assertThat(refundRepository.findById(refund.getId()).orElseThrow().getStatus())
+            .isEqualTo(RefundStatus.COMPLETED);
+        PaymentTransaction refunded = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertThat(refunded.getStatus()).isEqualTo(TransactionStatus.PARTIAL_REFUND);
+        assertThat(refunded.getRefundedAmount()).isEqualByComparingTo("4.00");
+        assertThat(refunded.getPendingRefundAmount()).isEqualByComparingTo("0");
+    }
+
+    // Past the reconciler's grace period; @PrePersist always stamps the current time
+    private void backdate(String table, String id) {
+        jdbcTemplate.update("UPDATE " + table + " SET updated_at = ? WHERE id = ?",
+            Timestamp.valueOf(LocalDateTime.now().minusMinutes(10)), id);
+    }
+}
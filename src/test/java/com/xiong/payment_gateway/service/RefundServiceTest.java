@@ -0,0 +1,168 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.config.BoundedExecutors;
+import com.xiong.payment_gateway.dto.RefundBatchItemResult;
+import com.xiong.payment_gateway.dto.RefundBatchResponse;
+import com.xiong.payment_gateway.dto.RefundRequest;
+import com.xiong.payment_gateway.metrics.GatewayMetrics;
+import com.xiong.payment_gateway.models.PaymentTransaction;
+import com.xiong.payment_gateway.models.Refund;
+import com.xiong.payment_gateway.models.RefundStatus;
+import com.xiong.payment_gateway.models.TestPayments;
+import com.xiong.payment_gateway.models.TransactionStatus;
+import com.xiong.payment_gateway.provider.PaymentProvider;
+import com.xiong.payment_gateway.provider.PaymentProviderClient;
+import com.xiong.payment_gateway.provider.PaymentProviderProperties;
+import com.xiong.payment_gateway.provider.ProviderResult;
+import com.xiong.payment_gateway.repository.PaymentRepository;
+import com.xiong.payment_gateway.repository.RefundRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// Each stage commits on its own, as in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RefundServiceTest {
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final PaymentStatusEventBus statusEventBus = mock(PaymentStatusEventBus.class);
+    private final WebhookService webhookService = mock(WebhookService.class);
+    // Payment as the provider saw it while working on each refund, keyed by refund ID
+    private final Map<String, PaymentTransaction> seenByProvider = new ConcurrentHashMap<>();
+    // Refund amounts in the order the provider received them
+    private final List<BigDecimal> providerCalls = new CopyOnWriteArrayList<>();
+    private Function<Refund, ProviderResult> providerAnswer = refund -> ProviderResult.approve();
+    private RefundService refundService;
+
+    @BeforeEach
+    void setUp() {
+        PaymentProvider provider = new PaymentProvider() {
+            @Override
+            public ProviderResult authorize(PaymentTransaction transaction) {
+                return ProviderResult.approve();
+            }
+
+            @Override
+            public ProviderResult refund(Refund refund, PaymentTransaction transaction) {
+                seenByProvider.put(refund.getId(), paymentRepository.findById(transaction.getId()).orElseThrow());
+                providerCalls.add(refund.getAmount());
+                return providerAnswer.apply(refund);
+            }
+        };
+        GatewayMetrics metrics = new GatewayMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+        refundService = new RefundService(refundRepository, paymentRepository, webhookService,
+            mock(PaymentSnapshotCache.class), statusEventBus,
+            new PaymentProviderClient(provider, new PaymentProviderProperties(),
+                new BoundedExecutors(new StandardEnvironment()), metrics),
+            new TransactionTemplate(transactionManager), Validation.buildDefaultValidatorFactory().getValidator(),
+            mock(MerchantVolumeService.class), metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refundRepository.deleteAll();
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void declinedRefundNeverChangesPaymentStatus() {
+        providerAnswer = refund -> ProviderResult.decline("insufficient funds");
+        PaymentTransaction payment = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.SUCCESS));
+
+        Refund refund = refundService.processRefund(request(payment, "10.00"));
+
+        assertThat(refund.getStatus()).isEqualTo(RefundStatus.FAILED);
+        PaymentTransaction during = seenByProvider.get(refund.getId());
+        assertThat(during.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(during.getPendingRefundAmount()).isEqualByComparingTo("10.00");
+        PaymentTransaction after = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertThat(after.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(after.getRefundedAmount()).isEqualByComparingTo("0");
+        assertThat(after.getPendingRefundAmount()).isEqualByComparingTo("0");
+        verify(statusEventBus, never()).publishAfterCommit(any());
+        verify(webhookService).enqueueRefundWebhook(
+            argThat(failed -> failed.getStatus() == RefundStatus.FAILED), any());
+    }
+
+    @Test
+    void completedRefundMovesPaymentStatus() {
+        PaymentTransaction payment = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.SUCCESS));
+
+        Refund partial = refundService.processRefund(request(payment, "4.00"));
+        Refund rest = refundService.processRefund(request(payment, "6.00"));
+
+        assertThat(List.of(partial.getStatus(), rest.getStatus())).containsOnly(RefundStatus.COMPLETED);
+        // The status moves only once the provider has approved
+        assertThat(seenByProvider.get(partial.getId()).getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(seenByProvider.get(rest.getId()).getStatus()).isEqualTo(TransactionStatus.PARTIAL_REFUND);
+        PaymentTransaction after = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertThat(after.getStatus()).isEqualTo(TransactionStatus.REFUNDED);
+        assertThat(after.getRefundedAmount()).isEqualByComparingTo("10.00");
+        assertThat(after.getPendingRefundAmount()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void batchAppliesRefundsOfOnePaymentInRequestOrder() {
+        PaymentTransaction payment = paymentRepository.save(TestPayments.payment("10.00", TransactionStatus.SUCCESS));
+
+        RefundBatchResponse response = refundService.processRefundsBatch(List.of(
+            request(payment, "6.00"), request(payment, "6.00"), request(payment, "4.00")));
+
+        // The second refund no longer fits once the first has been applied
+        assertThat(response.getResults()).extracting(RefundBatchItemResult::getOutcome).containsExactly(
+            RefundBatchItemResult.Outcome.CREATED, RefundBatchItemResult.Outcome.REJECTED,
+            RefundBatchItemResult.Outcome.CREATED);
+        assertThat(response.getResults().get(1).getErrorCode()).isEqualTo("REFUND_AMOUNT_EXCEEDS_BALANCE");
+        assertThat(providerCalls).containsExactly(new BigDecimal("6.00"), new BigDecimal("4.00"));
+        assertThat(response.getResults().get(2).getRefund().getStatus()).isEqualTo(RefundStatus.COMPLETED);
+        PaymentTransaction after = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertThat(after.getStatus()).isEqualTo(TransactionStatus.REFUNDED);
+        assertThat(after.getRefundedAmount()).isEqualByComparingTo("10.00");
+        assertThat(after.getPendingRefundAmount()).isEqualByComparingTo("0");
+        // One outbox insert for both refunds, in the finalizing transaction
+        verify(webhookService).enqueueRefundWebhooks(argThat(refunds -> refunds.size() == 2), any());
+    }
+
+    private static RefundRequest request(PaymentTransaction payment, String amount) {
+        RefundRequest request = new RefundRequest();
+        request.setTransactionId(payment.getId());
+        request.setAmount(new BigDecimal(amount));
+        request.setReason("requested_by_customer");
+        return request;
+    }
+}
@@ -0,0 +1,70 @@
+package com.xiong.payment_gateway.service;
+
+import com.xiong.payment_gateway.models.WebhookEvent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookDispatcherTest {
+    private final WebhookService webhookService = mock(WebhookService.class);
+    private final WebhookDispatcher dispatcher = new WebhookDispatcher(webhookService);
+    // Deliveries the endpoints have not answered yet
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(webhookService.claimDueEvents(anyInt())).thenAnswer(invocation ->
+            IntStream.range(0, invocation.<Integer>getArgument(0)).mapToObj(i -> new WebhookEvent()).toList());
+        when(webhookService.deliverWebhook(any())).thenAnswer(invocation -> {
+            CompletableFuture<Void> delivery = new CompletableFuture<>();
+            pending.add(delivery);
+            return delivery;
+        });
+    }
+
+    @Test
+    void returnsWithoutWaitingForDeliveries() {
+        dispatcher.dispatch();
+
+        // Four full batches claimed and started, none answered
+        verify(webhookService, times(4)).claimDueEvents(100);
+        verify(webhookService, times(400)).deliverWebhook(any());
+    }
+
+    @Test
+    void claimsOnlyAsDeliveriesComplete() {
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+        verify(webhookService, times(4)).claimDueEvents(anyInt());
+
+        pending.subList(0, 30).forEach(delivery -> delivery.complete(null));
+        dispatcher.dispatch();
+        verify(webhookService).claimDueEvents(30);
+
+        // Failed deliveries free their slot too
+        pending.subList(30, 40).forEach(delivery -> delivery.completeExceptionally(new IllegalStateException()));
+        dispatcher.dispatch();
+        verify(webhookService).claimDueEvents(10);
+    }
+
+    @Test
+    void stopsAtFirstShortBatch() {
+        when(webhookService.claimDueEvents(anyInt())).thenReturn(List.of(new WebhookEvent()));
+
+        dispatcher.dispatch();
+
+        verify(webhookService, times(1)).claimDueEvents(anyInt());
+    }
+}
@@ -0,0 +1,47 @@
+package com.xiong.payment_gateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebhookEndpointGuardTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WebhookEndpointGuard guard = new WebhookEndpointGuard(meterRegistry);
+
+    @Test
+    void boundsTrackedHostsAndNeverTagsByHost() {
+        for (int i = 0; i < WebhookEndpointGuard.MAX_TRACKED_HOSTS + 500; i++) {
+            guard.execute("merchant-" + i + ".example.com", () -> CompletableFuture.completedFuture(null)).join();
+        }
+
+        assertThat(guard.trackedHosts()).isLessThanOrEqualTo(WebhookEndpointGuard.MAX_TRACKED_HOSTS);
+        assertThat(meterRegistry.getMeters()).allSatisfy(meter ->
+            assertThat(meter.getId().getTag("host")).isNull());
+    }
+
+    @Test
+    void aggregatesOpenCircuitsAndInFlightCalls() {
+        for (int i = 0; i < 5; i++) {
+            guard.execute("down.example.com",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("connection refused")));
+        }
+        CompletableFuture<Void> slow = new CompletableFuture<>();
+        guard.execute("slow.example.com", () -> slow);
+
+        assertThat(gauge("webhook.circuit.open")).isEqualTo(1);
+        assertThat(gauge("webhook.bulkhead.in_flight")).isEqualTo(1);
+        assertThatThrownBy(() -> guard.execute("down.example.com", () -> CompletableFuture.completedFuture(null)).join())
+            .hasCauseInstanceOf(WebhookEndpointGuard.EndpointUnavailableException.class);
+
+        slow.complete(null);
+        assertThat(gauge("webhook.bulkhead.in_flight")).isZero();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+}